@@ -4,6 +4,7 @@ import org.kgrid.adapter.api.Executor;
 
 import java.io.InputStream;
 import java.net.URI;
+import java.nio.file.Path;
 
 public interface ActivationContext {
 
@@ -11,6 +12,15 @@ public interface ActivationContext {
 
   InputStream getBinary(URI pathToBinary);
 
+  /**
+   * Returns the local file holding the binary, if the shelf keeps it on disk, so adapters can
+   * serve it without copying it through the heap. Returns null when there is no such file, in which
+   * case {@link #getBinary(URI)} must be used.
+   */
+  default Path getBinaryPath(URI pathToBinary) {
+    return null;
+  }
+
   String getProperty(String key);
 
   void refresh(String engineName);
@@ -0,0 +1,31 @@
+package org.kgrid.adapter.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.URI;
+
+/** One endpoint to activate, with the same arguments as {@link Adapter#activate}. */
+public class ActivationRequest {
+
+    private final URI absoluteLocation;
+    private final URI endpointURI;
+    private final JsonNode deploymentSpec;
+
+    public URI getAbsoluteLocation() {
+        return absoluteLocation;
+    }
+
+    public URI getEndpointURI() {
+        return endpointURI;
+    }
+
+    public JsonNode getDeploymentSpec() {
+        return deploymentSpec;
+    }
+
+    public ActivationRequest(URI absoluteLocation, URI endpointURI, JsonNode deploymentSpec) {
+        this.absoluteLocation = absoluteLocation;
+        this.endpointURI = endpointURI;
+        this.deploymentSpec = deploymentSpec;
+    }
+}
@@ -0,0 +1,51 @@
+package org.kgrid.adapter.api;
+
+import java.time.Duration;
+
+/**
+ * The outcome of activating one endpoint in a bulk activation: the executor if it succeeded, the
+ * exception if it failed, and how long it took either way.
+ */
+public class ActivationResult {
+
+    private final ActivationRequest request;
+    private final Executor executor;
+    private final RuntimeException error;
+    private final Duration duration;
+
+    public ActivationRequest getRequest() {
+        return request;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    public RuntimeException getError() {
+        return error;
+    }
+
+    public Duration getDuration() {
+        return duration;
+    }
+
+    public boolean isActivated() {
+        return error == null;
+    }
+
+    public static ActivationResult activated(ActivationRequest request, Executor executor, Duration duration) {
+        return new ActivationResult(request, executor, null, duration);
+    }
+
+    public static ActivationResult failed(ActivationRequest request, RuntimeException error, Duration duration) {
+        return new ActivationResult(request, null, error, duration);
+    }
+
+    private ActivationResult(
+            ActivationRequest request, Executor executor, RuntimeException error, Duration duration) {
+        this.request = request;
+        this.executor = executor;
+        this.error = error;
+        this.duration = duration;
+    }
+}
@@ -3,6 +3,8 @@ package org.kgrid.adapter.api;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
 
 public interface Adapter {
@@ -13,5 +15,25 @@ public interface Adapter {
 
   Executor activate(URI absoluteLocation, URI endpointURI, JsonNode deploymentSpec);
 
+  /**
+   * Activates many endpoints, returning a result for each in request order. A failed activation
+   * is recorded in its result and doesn't stop the others. Adapters that can activate endpoints
+   * concurrently should override this; the default activates them one at a time.
+   */
+  default List<ActivationResult> activateAll(List<ActivationRequest> requests) {
+    List<ActivationResult> results = new ArrayList<>(requests.size());
+    for (ActivationRequest request : requests) {
+      long start = System.nanoTime();
+      try {
+        Executor executor = activate(
+            request.getAbsoluteLocation(), request.getEndpointURI(), request.getDeploymentSpec());
+        results.add(ActivationResult.activated(request, executor, Duration.ofNanos(System.nanoTime() - start)));
+      } catch (RuntimeException e) {
+        results.add(ActivationResult.failed(request, e, Duration.ofNanos(System.nanoTime() - start)));
+      }
+    }
+    return results;
+  }
+
   String status();
 }
@@ -0,0 +1,15 @@
+package org.kgrid.adapter.api;
+
+/**
+ * Thrown when an adapter is too busy to take a request, which should be answered with a 503 and can
+ * be tried again later.
+ */
+public class AdapterUnavailableException extends AdapterServerErrorException {
+    public AdapterUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+
+    public AdapterUnavailableException(String message) {
+        super(message);
+    }
+}
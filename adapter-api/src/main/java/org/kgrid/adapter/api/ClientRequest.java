@@ -1,7 +1,10 @@
 package org.kgrid.adapter.api;
 
+import java.io.InputStream;
 import java.net.URI;
 import java.net.http.HttpHeaders;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
 import java.util.Map;
 
@@ -30,6 +33,20 @@ public class ClientRequest {
         return body;
     }
 
+    /**
+     * Whether the body is an {@link InputStream} or a {@link ReadableByteChannel}, to be sent on as
+     * it is read rather than held in memory. Executors read a streaming body once, and leave closing
+     * it to whoever built the request.
+     */
+    public boolean isStreaming() {
+        return isStream(body);
+    }
+
+    /** The streaming body as an {@link InputStream}, or null if the body isn't streaming. */
+    public InputStream getBodyStream() {
+        return asStream(body);
+    }
+
     public URI getUrl() {
         return url;
     }
@@ -42,6 +59,20 @@ public class ClientRequest {
         return httpMethod;
     }
 
+    static boolean isStream(Object body) {
+        return body instanceof InputStream || body instanceof ReadableByteChannel;
+    }
+
+    static InputStream asStream(Object body) {
+        if (body instanceof InputStream) {
+            return (InputStream) body;
+        }
+        if (body instanceof ReadableByteChannel) {
+            return Channels.newInputStream((ReadableByteChannel) body);
+        }
+        return null;
+    }
+
     public static class Builder {
 
         private Object body;
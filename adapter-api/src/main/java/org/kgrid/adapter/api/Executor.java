@@ -1,6 +1,10 @@
 package org.kgrid.adapter.api;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 public interface Executor {
 
@@ -13,4 +17,31 @@ public interface Executor {
     Object result = execute(request.getBody(), request.getHeaders().firstValue("content-type").get());
     return new ExecutorResponse(result,new HashMap<>(), request);
   }
+
+  /**
+   * Executes the request without holding the caller's thread for the duration of the call.
+   * Executors that can do non-blocking I/O should override this; the default runs the
+   * synchronous {@link #execute(ClientRequest)} on the calling thread and wraps the outcome,
+   * so any exception it throws completes the returned stage exceptionally.
+   */
+  default CompletionStage<ExecutorResponse> executeAsync(ClientRequest request) {
+    try {
+      return CompletableFuture.completedFuture(execute(request));
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  /**
+   * Executes several requests to this endpoint, returning their responses in request order.
+   * Executors that can send many requests in one call should override this; the default executes
+   * them one at a time and stops at the first request that throws.
+   */
+  default List<ExecutorResponse> executeBatch(List<ClientRequest> requests) {
+    List<ExecutorResponse> responses = new ArrayList<>(requests.size());
+    for (ClientRequest request : requests) {
+      responses.add(execute(request));
+    }
+    return responses;
+  }
 }
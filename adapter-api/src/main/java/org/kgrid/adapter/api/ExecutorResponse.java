@@ -1,5 +1,7 @@
 package org.kgrid.adapter.api;
 
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
 import java.util.List;
 import java.util.Map;
 
@@ -13,6 +15,20 @@ public class ExecutorResponse {
         return body;
     }
 
+    /**
+     * Whether the body is an {@link InputStream} or a {@link ReadableByteChannel} that the executor
+     * is still reading from the runtime. The caller must read and close it; until it is closed the
+     * executor holds the connection it is reading from.
+     */
+    public boolean isStreaming() {
+        return ClientRequest.isStream(body);
+    }
+
+    /** The streaming body as an {@link InputStream}, or null if the body isn't streaming. */
+    public InputStream getBodyStream() {
+        return ClientRequest.asStream(body);
+    }
+
     public Map<String, List<String>> getHeaders() {
         return headers;
     }
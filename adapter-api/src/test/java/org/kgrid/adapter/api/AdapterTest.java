@@ -0,0 +1,68 @@
+package org.kgrid.adapter.api;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+class AdapterTest {
+
+    private static final URI LOCATION = URI.create("hello-world-v1.0");
+    private static final URI WELCOME = URI.create("hello/world/v1.0/welcome");
+    private static final URI BROKEN = URI.create("hello/world/v1.0/broken");
+    private static final URI GOODBYE = URI.create("hello/world/v1.0/goodbye");
+
+    private final List<URI> activated = new ArrayList<>();
+
+    @Test
+    @DisplayName("Activate all activates each endpoint in order and records failures")
+    void activateAll_DefaultLoopsOverActivate() {
+        Adapter adapter = new Adapter() {
+            @Override
+            public List<String> getEngines() {
+                return List.of("test");
+            }
+
+            @Override
+            public void initialize(ActivationContext context) {
+            }
+
+            @Override
+            public Executor activate(URI absoluteLocation, URI endpointURI, JsonNode deploymentSpec) {
+                activated.add(endpointURI);
+                if (BROKEN.equals(endpointURI)) {
+                    throw new AdapterException("Cannot activate " + endpointURI);
+                }
+                return new Executor() {
+                };
+            }
+
+            @Override
+            public String status() {
+                return "up";
+            }
+        };
+        JsonNode spec = JsonNodeFactory.instance.objectNode();
+
+        List<ActivationResult> results = adapter.activateAll(List.of(
+                new ActivationRequest(LOCATION, WELCOME, spec),
+                new ActivationRequest(LOCATION, BROKEN, spec),
+                new ActivationRequest(LOCATION, GOODBYE, spec)));
+
+        assertEquals(List.of(WELCOME, BROKEN, GOODBYE), activated);
+        assertEquals(3, results.size());
+        assertTrue(results.get(0).isActivated());
+        assertNotNull(results.get(0).getExecutor());
+        assertFalse(results.get(1).isActivated());
+        assertEquals("Cannot activate " + BROKEN, results.get(1).getError().getMessage());
+        assertEquals(BROKEN, results.get(1).getRequest().getEndpointURI());
+        assertTrue(results.get(2).isActivated());
+        results.forEach(result -> assertFalse(result.getDuration().isNegative()));
+    }
+}
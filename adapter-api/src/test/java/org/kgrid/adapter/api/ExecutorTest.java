@@ -5,9 +5,14 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
 
 class ExecutorTest {
 
@@ -115,4 +120,68 @@ class ExecutorTest {
                 () -> executor.execute(INPUT, REQUEST_CONTENT_TYPE));
         assertEquals("This Executor type is no longer supported, please use the ClientRequest Class as input", exception.getMessage());
     }
+
+    @Test
+    @DisplayName("Execute async by default completes with the synchronous response")
+    void executeAsync_DefaultBridgesToExecute() {
+        Executor executor = new Executor() {
+            @Override
+            public ExecutorResponse execute(ClientRequest clientRequest) {
+                return new ExecutorResponse(OUTPUT, responseHeaders, clientRequest);
+            }
+        };
+        ExecutorResponse executorResponse = executor.executeAsync(clientRequest).toCompletableFuture().join();
+        assertEquals(clientRequest, executorResponse.getClientRequest());
+        assertEquals(OUTPUT, executorResponse.getBody());
+    }
+
+    @Test
+    @DisplayName("Execute async by default completes exceptionally when execute throws")
+    void executeAsync_DefaultCompletesExceptionally() {
+        Executor executor = new Executor() {
+            @Override
+            public ExecutorResponse execute(ClientRequest clientRequest) {
+                throw new AdapterServerErrorException(OUTPUT);
+            }
+        };
+        CompletionException exception = assertThrows(CompletionException.class,
+                () -> executor.executeAsync(clientRequest).toCompletableFuture().join());
+        assertEquals(AdapterServerErrorException.class, exception.getCause().getClass());
+    }
+
+    @Test
+    @DisplayName("Execute batch by default executes each request in order")
+    void executeBatch_DefaultExecutesEachRequest() {
+        ClientRequest secondRequest = clientRequestBuilder.body(OUTPUT).build();
+        Executor executor = new Executor() {
+            @Override
+            public ExecutorResponse execute(ClientRequest clientRequest) {
+                return new ExecutorResponse(clientRequest.getBody(), responseHeaders, clientRequest);
+            }
+        };
+        List<ExecutorResponse> responses = executor.executeBatch(List.of(clientRequest, secondRequest));
+        assertEquals(2, responses.size());
+        assertEquals(INPUT, responses.get(0).getBody());
+        assertEquals(OUTPUT, responses.get(1).getBody());
+        assertEquals(secondRequest, responses.get(1).getClientRequest());
+    }
+
+    @Test
+    @DisplayName("Request and response bodies that are streams or channels are streaming")
+    void streamingBodies() throws IOException {
+        assertFalse(clientRequest.isStreaming());
+        assertNull(clientRequest.getBodyStream());
+
+        ClientRequest streamingRequest = clientRequestBuilder
+                .body(new ByteArrayInputStream(INPUT.getBytes(StandardCharsets.UTF_8)))
+                .build();
+        assertTrue(streamingRequest.isStreaming());
+        assertEquals(INPUT, new String(streamingRequest.getBodyStream().readAllBytes(), StandardCharsets.UTF_8));
+
+        ExecutorResponse streamingResponse = new ExecutorResponse(
+                Channels.newChannel(new ByteArrayInputStream(OUTPUT.getBytes(StandardCharsets.UTF_8))),
+                responseHeaders, streamingRequest);
+        assertTrue(streamingResponse.isStreaming());
+        assertEquals(OUTPUT, new String(streamingResponse.getBodyStream().readAllBytes(), StandardCharsets.UTF_8));
+    }
 }
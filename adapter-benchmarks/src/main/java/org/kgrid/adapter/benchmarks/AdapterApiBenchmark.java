@@ -0,0 +1,104 @@
+package org.kgrid.adapter.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpHeaders;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.kgrid.adapter.api.ClientRequest;
+import org.kgrid.adapter.api.Executor;
+import org.kgrid.adapter.api.ExecutorResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The per-request work the adapter api adds to every KO execution: building the
+ * {@link ClientRequest} from the activator's headers, calling through the deprecated bridge in
+ * {@link Executor#execute(ClientRequest)}, and wrapping the result in an {@link ExecutorResponse}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class AdapterApiBenchmark {
+
+    private static final URI ENDPOINT = URI.create("hello/world/v1.0/welcome");
+
+    private Map<String, List<String>> headerMap;
+    private HttpHeaders headers;
+    private JsonNode body;
+    private ClientRequest request;
+    private Executor legacyExecutor;
+
+    @Setup
+    public void setUp() throws IOException {
+        headerMap = new HashMap<>();
+        headerMap.put("content-type", List.of("application/json"));
+        headerMap.put("accept", List.of("application/json", "text/plain"));
+        headerMap.put("user-agent", List.of("kgrid-benchmark"));
+        headerMap.put("x-request-id", List.of("4f1c2e9a-6a39-4d1b-9c55-0d4a1f3c7b21"));
+        headers = HttpHeaders.of(headerMap, (name, value) -> true);
+        body = new ObjectMapper().readTree("{\"name\":\"Bob\",\"age\":42,\"tags\":[\"a\",\"b\"]}");
+        request = new ClientRequest.Builder()
+                .body(body)
+                .url(ENDPOINT)
+                .headers(headers)
+                .httpMethod("POST")
+                .build();
+        legacyExecutor = new Executor() {
+            // the deprecated bridge is what the legacy benchmark measures
+            @SuppressWarnings("deprecation")
+            @Override
+            public Object execute(Object input, String contentType) {
+                return input;
+            }
+        };
+    }
+
+    /** Builds a request from a header map, which copies it through {@code HttpHeaders.of}. */
+    @Benchmark
+    public ClientRequest buildRequestFromHeaderMap() {
+        return new ClientRequest.Builder()
+                .body(body)
+                .url(ENDPOINT)
+                .headers(headerMap)
+                .httpMethod("POST")
+                .build();
+    }
+
+    /** Builds a request from headers that are already {@code HttpHeaders}. */
+    @Benchmark
+    public ClientRequest buildRequestFromHttpHeaders() {
+        return new ClientRequest.Builder()
+                .body(body)
+                .url(ENDPOINT)
+                .headers(headers)
+                .httpMethod("POST")
+                .build();
+    }
+
+    /** Runs a request through the default bridge to the deprecated {@code execute(Object, String)}. */
+    @Benchmark
+    public ExecutorResponse executeThroughDeprecatedBridge() {
+        return legacyExecutor.execute(request);
+    }
+
+    @Benchmark
+    public ExecutorResponse createResponse() {
+        return new ExecutorResponse(body, new HashMap<>(), request);
+    }
+}
@@ -0,0 +1,89 @@
+package org.kgrid.adapter.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.net.URI;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.kgrid.adapter.api.ActivationContext;
+import org.kgrid.adapter.api.Executor;
+import org.kgrid.adapter.proxy.ProxyAdapter;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * A {@link ProxyAdapter} set up outside of an activator, with its runtimes registered through its
+ * own REST api. Adapter properties ({@code kgrid.adapter.proxy.*}) are read from system
+ * properties, so a run can be tuned with {@code -D} options the same way an activator is.
+ */
+public class EmbeddedProxy implements AutoCloseable {
+
+    public static final URI LOCATION = URI.create("hello-world-v1.0");
+    public static final URI ENDPOINT = URI.create("hello/world/v1.0/welcome");
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final ProxyAdapter adapter = new ProxyAdapter();
+    private final CloseableHttpClient httpClient;
+
+    public EmbeddedProxy() throws ReflectiveOperationException {
+        httpClient = HttpClients.custom()
+                .setMaxConnTotal(Integer.getInteger("kgrid.adapter.proxy.http.max-total", 200))
+                .setMaxConnPerRoute(Integer.getInteger("kgrid.adapter.proxy.http.max-per-runtime", 50))
+                .build();
+        Field restTemplate = ProxyAdapter.class.getDeclaredField("restTemplate");
+        restTemplate.setAccessible(true);
+        restTemplate.set(adapter, new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient)));
+        adapter.initialize(new ActivationContext() {
+            @Override
+            public Executor getExecutor(String key) {
+                return null;
+            }
+
+            @Override
+            public InputStream getBinary(URI pathToBinary) {
+                return null;
+            }
+
+            @Override
+            public String getProperty(String key) {
+                return System.getProperty(key);
+            }
+
+            @Override
+            public void refresh(String engineName) {
+            }
+        });
+    }
+
+    public void register(StubRuntime runtime) {
+        MockHttpServletRequest registration = new MockHttpServletRequest("POST", "/proxy/environments");
+        adapter.registerRemoteRuntime(
+                mapper.createObjectNode().put("engine", StubRuntime.ENGINE).put("url", runtime.getUrl()),
+                registration);
+    }
+
+    /** Activates the welcome endpoint on the registered runtimes, with extra deployment spec fields. */
+    public Executor activate(ObjectNode extraSpec) {
+        ObjectNode deploymentSpec = mapper.createObjectNode()
+                .put("engine", StubRuntime.ENGINE)
+                .put("function", "welcome")
+                .put("artifact", "src/index.js");
+        if (extraSpec != null) {
+            deploymentSpec.setAll(extraSpec);
+        }
+        return adapter.activate(LOCATION, ENDPOINT, deploymentSpec);
+    }
+
+    public ProxyAdapter getAdapter() {
+        return adapter;
+    }
+
+    @Override
+    public void close() throws IOException {
+        httpClient.close();
+    }
+}
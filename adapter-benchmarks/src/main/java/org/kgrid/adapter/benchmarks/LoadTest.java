@@ -0,0 +1,199 @@
+package org.kgrid.adapter.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.kgrid.adapter.api.ClientRequest;
+import org.kgrid.adapter.api.Executor;
+
+/**
+ * An open-loop load test of the proxy adapter against {@link StubRuntime}s on loopback. Requests
+ * are started at a fixed rate whether or not earlier ones have finished, and each one's latency is
+ * measured from when it was due to start, so a stalled proxy shows up in the percentiles instead of
+ * quietly lowering the request rate (coordinated omission).
+ *
+ * <p>Options are given as {@code --name=value}; see {@link #USAGE}. Adapter properties such as
+ * {@code kgrid.adapter.proxy.bulkhead.max-concurrent} are passed as system properties.
+ */
+public final class LoadTest {
+
+    static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: java -cp benchmarks.jar " + LoadTest.class.getName() + " [--name=value ...]",
+            "  --rate=500              requests started per second",
+            "  --duration=30           measured seconds",
+            "  --warmup=5              seconds of load before measuring",
+            "  --concurrency=256       most requests in flight; later ones wait, and their wait counts",
+            "  --runtimes=1            stub runtimes registered for the engine",
+            "  --runtime-threads=64    request threads per stub runtime",
+            "  --latency=0             milliseconds each stub runtime takes to answer",
+            "  --error-rate=0          fraction of executions, 0 to 1, the stub runtimes fail with a 500",
+            "  --payload=0             bytes in each execution result, or 0 for a small fixed result",
+            "  --spec={}               JSON merged into the deployment spec, e.g. retry or hedge settings",
+            "  --histogram=            file to write the full latency distribution to");
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final Map<String, String> options;
+    private final Recorder recorder = new Recorder(3);
+    private final LongAdder completed = new LongAdder();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    private LoadTest(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                System.err.println(USAGE);
+                System.exit(2);
+            }
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        new LoadTest(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        int rate = intOption("rate", 500);
+        int runtimeCount = intOption("runtimes", 1);
+        Duration latency = Duration.ofMillis(intOption("latency", 0));
+        double errorRate = Double.parseDouble(options.getOrDefault("error-rate", "0"));
+
+        List<StubRuntime> runtimes = new ArrayList<>();
+        ExecutorService clients = Executors.newFixedThreadPool(intOption("concurrency", 256));
+        try (EmbeddedProxy proxy = new EmbeddedProxy()) {
+            for (int i = 0; i < runtimeCount; i++) {
+                StubRuntime runtime = new StubRuntime(
+                        intOption("runtime-threads", 64), latency, errorRate, intOption("payload", 0));
+                runtimes.add(runtime);
+                proxy.register(runtime);
+            }
+            Executor executor = proxy.activate((ObjectNode) MAPPER.readTree(options.getOrDefault("spec", "{}")));
+            ClientRequest request = new ClientRequest.Builder()
+                    .body(MAPPER.readTree("{\"name\":\"Bob\",\"age\":42,\"tags\":[\"a\",\"b\"]}"))
+                    .url(EmbeddedProxy.ENDPOINT)
+                    .headers(Map.of("content-type", List.of("application/json")))
+                    .httpMethod("POST")
+                    .build();
+
+            System.out.printf("%d requests/s to %d stub runtime(s): %d ms latency, %.1f%% errors%n",
+                    rate, runtimeCount, latency.toMillis(), errorRate * 100);
+            System.out.printf("Warming up for %d s%n", intOption("warmup", 5));
+            drive(executor, request, clients, rate, intOption("warmup", 5), false);
+            recorder.reset();
+            completed.reset();
+            errors.clear();
+
+            long start = System.nanoTime();
+            Histogram total = drive(executor, request, clients, rate, intOption("duration", 30), true);
+            clients.shutdown();
+            clients.awaitTermination(1, TimeUnit.MINUTES);
+            total.add(recorder.getIntervalHistogram());
+            report(total, System.nanoTime() - start);
+        } finally {
+            clients.shutdownNow();
+            runtimes.forEach(StubRuntime::close);
+        }
+    }
+
+    /**
+     * Starts requests at {@code rate} per second for {@code seconds}, returning the latencies
+     * recorded so far. Requests still in flight at the end go on recording into the recorder.
+     */
+    private Histogram drive(Executor executor, ClientRequest request, ExecutorService clients,
+            int rate, int seconds, boolean print) {
+        Histogram total = new Histogram(3);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long lastCompleted = 0;
+        for (long due = start; due < end; due += interval) {
+            long wait = due - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long intended = due;
+            clients.execute(() -> execute(executor, request, intended));
+            if (due >= nextReport) {
+                Histogram second = recorder.getIntervalHistogram();
+                total.add(second);
+                long done = completed.sum();
+                if (print) {
+                    System.out.printf("%5d req/s  p50 %8.2f ms  p99 %8.2f ms  max %8.2f ms  errors %d%n",
+                            done - lastCompleted,
+                            millis(second.getValueAtPercentile(50)),
+                            millis(second.getValueAtPercentile(99)),
+                            millis(second.getMaxValue()),
+                            errorCount());
+                }
+                lastCompleted = done;
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+        }
+        return total;
+    }
+
+    private void execute(Executor executor, ClientRequest request, long intended) {
+        try {
+            executor.execute(request);
+        } catch (RuntimeException e) {
+            errors.computeIfAbsent(e.getClass().getSimpleName() + ": " + e.getMessage(),
+                    error -> new LongAdder()).increment();
+        }
+        recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+        completed.increment();
+    }
+
+    private void report(Histogram total, long elapsed) throws IOException {
+        double seconds = elapsed / 1e9;
+        System.out.println();
+        System.out.printf("Requests:   %d in %.1f s (%.1f req/s)%n",
+                total.getTotalCount(), seconds, total.getTotalCount() / seconds);
+        System.out.printf("Errors:     %d %s%n", errorCount(), errors);
+        System.out.println("Latency from scheduled start, ms:");
+        for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+            System.out.printf("  p%-6s %10.2f%n", percentile, millis(total.getValueAtPercentile(percentile)));
+        }
+        System.out.printf("  %-7s %10.2f%n", "max", millis(total.getMaxValue()));
+
+        String histogram = options.get("histogram");
+        if (histogram != null && !histogram.isEmpty()) {
+            try (PrintStream out = new PrintStream(new FileOutputStream(histogram))) {
+                total.outputPercentileDistribution(out, 1000.0);
+            }
+            System.out.println("Latency distribution written to " + histogram);
+        }
+    }
+
+    private long errorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private int intOption(String name, int defaultValue) {
+        String value = options.get(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,67 @@
+package org.kgrid.adapter.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.kgrid.adapter.api.ClientRequest;
+import org.kgrid.adapter.api.Executor;
+import org.kgrid.adapter.api.ExecutorResponse;
+import org.kgrid.adapter.proxy.ProxyAdapter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A KO request through the whole proxy adapter: an endpoint activated by {@link ProxyAdapter} on a
+ * {@link StubRuntime} over loopback HTTP, executed the way the activator executes it. Throughput
+ * and sampled latency are both reported; run with {@code -prof gc} for the allocation rate.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(2)
+@State(Scope.Benchmark)
+public class ProxyExecutionBenchmark {
+
+    private StubRuntime runtime;
+    private EmbeddedProxy proxy;
+    private Executor executor;
+    private ClientRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        runtime = new StubRuntime(16);
+        proxy = new EmbeddedProxy();
+        proxy.register(runtime);
+        executor = proxy.activate(null);
+        request = new ClientRequest.Builder()
+                .body(new ObjectMapper().readTree("{\"name\":\"Bob\",\"age\":42,\"tags\":[\"a\",\"b\"]}"))
+                .url(EmbeddedProxy.ENDPOINT)
+                .headers(Map.of("content-type", List.of("application/json")))
+                .httpMethod("POST")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        proxy.close();
+        runtime.close();
+    }
+
+    @Benchmark
+    public ExecutorResponse execute() {
+        return executor.execute(request);
+    }
+}
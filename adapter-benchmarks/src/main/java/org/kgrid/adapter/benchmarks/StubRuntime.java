@@ -0,0 +1,127 @@
+package org.kgrid.adapter.benchmarks;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-process remote runtime that implements just enough of the runtime API for the proxy
+ * adapter: {@code /info} reports it up, {@code /endpoints} activates any endpoint at
+ * {@code /welcome}, and {@code /welcome} reads the request and answers with a fixed result. It does
+ * no work of its own, so benchmarks against it measure the activator's side of a request.
+ *
+ * <p>For load tests the execution endpoint can be made to behave more like a real runtime: it can
+ * wait a fixed latency before answering, fail a fraction of requests with a 500, and pad its
+ * result out to a given size.
+ */
+public class StubRuntime implements AutoCloseable {
+
+    public static final String ENGINE = "stub";
+
+    static {
+        // Without this the JDK server's responses wait on delayed ACKs, adding ~40 ms to each request
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    private static final byte[] RESULT =
+            "{\"result\":\"Welcome to the Knowledge Grid\"}".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] ERROR =
+            "{\"error\":\"Stub runtime failure\"}".getBytes(StandardCharsets.UTF_8);
+
+    private final HttpServer server;
+    private final ExecutorService threads;
+    private final String url;
+    private final long latencyNanos;
+    private final double errorRate;
+    private final byte[] result;
+
+    public StubRuntime(int threadCount) throws IOException {
+        this(threadCount, Duration.ZERO, 0, 0);
+    }
+
+    /**
+     * @param latency how long the execution endpoint waits before answering
+     * @param errorRate the fraction of executions, from 0 to 1, that answer with a 500
+     * @param payloadSize the size in bytes of the execution result, or 0 for the small fixed result
+     */
+    public StubRuntime(int threadCount, Duration latency, double errorRate, int payloadSize)
+            throws IOException {
+        this.latencyNanos = latency.toNanos();
+        this.errorRate = errorRate;
+        this.result = payloadSize > 0 ? padded(payloadSize) : RESULT;
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1024);
+        threads = Executors.newFixedThreadPool(threadCount);
+        server.setExecutor(threads);
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+        server.createContext("/info", exchange -> respond(exchange,
+                ("{\"engine\":\"" + ENGINE + "\",\"status\":\"up\",\"url\":\"" + url + "\"}")
+                        .getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/endpoints", exchange -> respond(exchange,
+                ("{\"baseUrl\":\"" + url + "/\",\"uri\":\"welcome\"}").getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/welcome", this::execute);
+        server.start();
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        threads.shutdownNow();
+    }
+
+    private void execute(HttpExchange exchange) throws IOException {
+        if (latencyNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(latencyNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            respond(exchange, 500, ERROR);
+        } else {
+            respond(exchange, result);
+        }
+    }
+
+    /** A result of exactly {@code size} bytes, or the shortest valid one when that is smaller. */
+    private static byte[] padded(int size) {
+        byte[] prefix = "{\"result\":\"".getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[Math.max(size, prefix.length + 2)];
+        System.arraycopy(prefix, 0, body, 0, prefix.length);
+        Arrays.fill(body, prefix.length, body.length - 2, (byte) 'x');
+        body[body.length - 2] = '"';
+        body[body.length - 1] = '}';
+        return body;
+    }
+
+    private static void respond(HttpExchange exchange, byte[] body) throws IOException {
+        respond(exchange, 200, body);
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        try (InputStream request = exchange.getRequestBody()) {
+            request.transferTo(OutputStream.nullOutputStream());
+        }
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(body);
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.kgrid.adapter.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.kgrid.adapter.proxy.RuntimeResultExtractor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.MediaType;
+
+/**
+ * The serialization work the proxy adapter does for each request, in each format it can speak to
+ * runtimes: writing the KO input, and extracting the result from the runtime's response the way
+ * the proxy executor does. The encoded size of each payload is listed in the README; run with
+ * {@code -prof gc} for the allocation rate.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    /** A single KO input, like the hello world example's. */
+    static final String SMALL = "small";
+    /** A patient record of the size risk score KOs take, with a few hundred observations. */
+    static final String RECORD = "record";
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({SMALL, RECORD})
+    public String payload;
+
+    private final RuntimeResultExtractor extractor = new RuntimeResultExtractor();
+    private ObjectMapper mapper;
+    private MediaType mediaType;
+    private JsonNode input;
+    private byte[] response;
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (format) {
+            case "cbor":
+                mapper = new CBORMapper();
+                mediaType = MediaType.valueOf("application/cbor");
+                break;
+            case "smile":
+                mapper = new SmileMapper();
+                mediaType = MediaType.valueOf("application/x-jackson-smile");
+                break;
+            default:
+                mapper = new ObjectMapper();
+                mediaType = MediaType.APPLICATION_JSON;
+        }
+        input = SMALL.equals(payload) ? small() : record();
+        ObjectNode result = new ObjectMapper().createObjectNode();
+        result.set("result", input);
+        result.put("request_id", "4f1c2e9a-6a39-4d1b-9c55-0d4a1f3c7b21");
+        response = mapper.writeValueAsBytes(result);
+    }
+
+    @Benchmark
+    public byte[] writeInput() throws IOException {
+        return mapper.writeValueAsBytes(input);
+    }
+
+    @Benchmark
+    public Object extractResult() throws IOException {
+        return extractor.extract(new ByteArrayInputStream(response), mediaType);
+    }
+
+    private static JsonNode small() throws IOException {
+        return new ObjectMapper().readTree("{\"name\":\"Bob\",\"age\":42,\"tags\":[\"a\",\"b\"]}");
+    }
+
+    private static JsonNode record() {
+        ObjectNode patient = new ObjectMapper().createObjectNode();
+        patient.put("id", "patient-000417")
+                .put("birthDate", "1961-07-23")
+                .put("sex", "female")
+                .put("smoker", false);
+        ArrayNode observations = patient.putArray("observations");
+        for (int i = 0; i < 300; i++) {
+            observations.addObject()
+                    .put("code", i % 3 == 0 ? "8480-6" : i % 3 == 1 ? "8462-4" : "2093-3")
+                    .put("display", i % 3 == 0 ? "Systolic blood pressure"
+                            : i % 3 == 1 ? "Diastolic blood pressure" : "Total cholesterol")
+                    .put("value", 80 + (i * 37 % 90) + 0.5)
+                    .put("unit", i % 3 == 2 ? "mg/dL" : "mm[Hg]")
+                    .put("effective", "2020-" + (1 + i % 12) + "-" + (1 + i % 28) + "T09:30:00Z");
+        }
+        return patient;
+    }
+}
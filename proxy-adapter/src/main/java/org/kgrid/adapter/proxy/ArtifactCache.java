@@ -0,0 +1,250 @@
+package org.kgrid.adapter.proxy;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Keeps recently served KO artifacts in memory, up to a total number of bytes, so runtimes fetching
+ * the same artifact don't each cause a read from the shelf. When the budget is full the least
+ * recently used artifacts are dropped first. Runtimes that ask for an artifact while it is being
+ * read share that one read.
+ *
+ * <p>Content can be kept off the Java heap, in direct buffers, so a large cache doesn't add to
+ * garbage collection work. A budget of zero turns caching off.
+ *
+ * <p>Artifacts of at least the compression threshold are also kept gzipped, compressed once when
+ * they are read, for runtimes that accept a gzipped response. Both copies count against the budget,
+ * and the gzipped one is dropped if it turns out no smaller.
+ */
+class ArtifactCache {
+
+    private final long maxBytes;
+    private final boolean offHeap;
+    private final int gzipMinSize;
+    private final LinkedHashMap<URI, CachedArtifact> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<URI, CompletableFuture<CachedArtifact>> loading = new ConcurrentHashMap<>();
+    /** Reads underway when their KO was invalidated, whose content may already be out of date. */
+    private final Set<CompletableFuture<CachedArtifact>> staleLoads = ConcurrentHashMap.newKeySet();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private long bytes;
+
+    ArtifactCache(long maxBytes, boolean offHeap) {
+        this(maxBytes, offHeap, -1);
+    }
+
+    /** @param gzipMinSize the smallest artifact, in bytes, kept gzipped, or -1 to keep none */
+    ArtifactCache(long maxBytes, boolean offHeap, int gzipMinSize) {
+        this.maxBytes = Math.max(maxBytes, 0);
+        this.offHeap = offHeap;
+        this.gzipMinSize = gzipMinSize;
+    }
+
+    /** Whether an artifact of this length would be cached with a gzipped copy. */
+    boolean compresses(long length) {
+        return gzipMinSize >= 0 && length >= gzipMinSize && length <= maxBytes;
+    }
+
+    /** Loads artifact content from the shelf; returns null if there is no such artifact. */
+    @FunctionalInterface
+    interface Loader {
+        byte[] load() throws IOException;
+    }
+
+    /**
+     * Returns the artifact from the cache, or reads it with the loader and caches it. Returns null
+     * if the loader finds no artifact.
+     */
+    CachedArtifact get(URI artifact, Loader loader) throws IOException {
+        if (maxBytes == 0) {
+            misses.increment();
+            return toArtifact(loader.load());
+        }
+        CachedArtifact cached = lookup(artifact);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        CompletableFuture<CachedArtifact> load = new CompletableFuture<>();
+        CompletableFuture<CachedArtifact> existing = loading.putIfAbsent(artifact, load);
+        if (existing != null) {
+            hits.increment();
+            return await(existing);
+        }
+        try {
+            CachedArtifact loaded = lookup(artifact);
+            if (loaded != null) {
+                // Another read finished between the lookup and claiming the load
+                hits.increment();
+                load.complete(loaded);
+                return loaded;
+            }
+            misses.increment();
+            loaded = toArtifact(loader.load());
+            if (loaded != null) {
+                store(artifact, loaded, load);
+            }
+            load.complete(loaded);
+            return loaded;
+        } catch (IOException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(artifact, load);
+            staleLoads.remove(load);
+        }
+    }
+
+    /**
+     * Drops every cached artifact under the KO location, and keeps reads of its artifacts already
+     * underway from being cached, so the next request sees the artifacts as they are now. Reads of
+     * other KOs are cached as usual.
+     */
+    void invalidate(URI location) {
+        String prefix = location.toString();
+        String directory = prefix.endsWith("/") ? prefix : prefix + "/";
+        synchronized (this) {
+            loading.forEach((artifact, load) -> {
+                String key = artifact.toString();
+                if (key.equals(prefix) || key.startsWith(directory)) {
+                    staleLoads.add(load);
+                }
+            });
+            Iterator<Map.Entry<URI, CachedArtifact>> cached = entries.entrySet().iterator();
+            while (cached.hasNext()) {
+                Map.Entry<URI, CachedArtifact> entry = cached.next();
+                String key = entry.getKey().toString();
+                if (key.equals(prefix) || key.startsWith(directory)) {
+                    bytes -= entry.getValue().getSize();
+                    cached.remove();
+                }
+            }
+        }
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        synchronized (this) {
+            stats.put("entries", entries.size());
+            stats.put("bytes", bytes);
+        }
+        stats.put("maxBytes", maxBytes);
+        stats.put("offHeap", offHeap);
+        return stats;
+    }
+
+    private synchronized CachedArtifact lookup(URI artifact) {
+        return entries.get(artifact);
+    }
+
+    private synchronized void store(URI artifact, CachedArtifact loaded, CompletableFuture<CachedArtifact> load) {
+        if (loaded.getSize() > maxBytes || staleLoads.contains(load)) {
+            return;
+        }
+        CachedArtifact replaced = entries.put(artifact, loaded);
+        if (replaced != null) {
+            bytes -= replaced.getSize();
+        }
+        bytes += loaded.getSize();
+        Iterator<CachedArtifact> eldest = entries.values().iterator();
+        while (bytes > maxBytes && eldest.hasNext()) {
+            bytes -= eldest.next().getSize();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private CachedArtifact toArtifact(byte[] content) throws IOException {
+        if (content == null) {
+            return null;
+        }
+        ByteBuffer gzipped = null;
+        if (compresses(content.length)) {
+            byte[] compressed = Compression.encode(content, Compression.GZIP);
+            if (compressed.length < content.length) {
+                gzipped = toBuffer(compressed);
+            }
+        }
+        return new CachedArtifact(
+                toBuffer(content), gzipped, "\"" + DigestUtils.md5DigestAsHex(content) + "\"");
+    }
+
+    private ByteBuffer toBuffer(byte[] content) {
+        ByteBuffer buffer = offHeap ? ByteBuffer.allocateDirect(content.length) : ByteBuffer.allocate(content.length);
+        buffer.put(content).flip();
+        return buffer.asReadOnlyBuffer();
+    }
+
+    private CachedArtifact await(CompletableFuture<CachedArtifact> load) throws IOException {
+        try {
+            return load.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the artifact to load", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /** Artifact content, and its gzipped copy if it has one, with the ETag it is served with. */
+    static final class CachedArtifact {
+        private final ByteBuffer content;
+        private final ByteBuffer gzipped;
+        private final String etag;
+
+        private CachedArtifact(ByteBuffer content, ByteBuffer gzipped, String etag) {
+            this.content = content;
+            this.gzipped = gzipped;
+            this.etag = etag;
+        }
+
+        /** Returns a view of the content that the caller is free to read. */
+        ByteBuffer getContent() {
+            return content.duplicate();
+        }
+
+        /** Returns a view of the gzipped content, or null if it isn't kept gzipped. */
+        ByteBuffer getGzipped() {
+            return gzipped == null ? null : gzipped.duplicate();
+        }
+
+        String getEtag() {
+            return etag;
+        }
+
+        /** The ETag of the gzipped content, which is a different representation of the artifact. */
+        String getGzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gzip\"";
+        }
+
+        long getLength() {
+            return content.capacity();
+        }
+
+        /** The bytes the artifact takes in the cache. */
+        long getSize() {
+            return content.capacity() + (gzipped == null ? 0 : gzipped.capacity());
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package org.kgrid.adapter.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.kgrid.adapter.api.ActivationContext;
+import org.kgrid.adapter.proxy.ArtifactCache.CachedArtifact;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.util.DigestUtils;
+import org.springframework.web.context.request.ServletWebRequest;
+
+/**
+ * Writes KO artifacts to runtimes that fetch them from {@code /proxy/artifacts/**}.
+ *
+ * <p>Every artifact carries a strong ETag made from a hash of its content, so a runtime that
+ * re-fetches an artifact it already has gets a 304 back. Single byte ranges are honored with a 206.
+ * Artifacts the shelf keeps as local files are sent straight from the file: through the servlet
+ * container's sendfile support when it has it, otherwise with {@link FileChannel#transferTo}, and
+ * their hashes are kept until the file changes. Anything else is read through the
+ * {@link ArtifactCache}, which hashes it once when it is read from the shelf.
+ *
+ * <p>Runtimes that accept gzip are sent the cache's gzipped copy of artifacts big enough to have
+ * one, with its own ETag. Files of that size are then read through the cache too, keyed by their
+ * length and modification time so a changed file isn't served from an old entry. Range requests
+ * are always answered from the uncompressed content.
+ */
+class ArtifactResponder {
+
+    static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final Map<Path, FileDigest> fileDigests = new ConcurrentHashMap<>();
+
+    void respond(
+            ActivationContext context,
+            ArtifactCache cache,
+            URI artifact,
+            HttpServletRequest request,
+            HttpServletResponse response)
+            throws IOException {
+        Path file = context.getBinaryPath(artifact);
+        if (file != null && Files.isRegularFile(file)) {
+            CachedArtifact compressed = compressedFile(cache, file, artifact, request);
+            if (compressed != null) {
+                respondWithContent(compressed, artifact, request, response);
+                return;
+            }
+            respondWithFile(cache, file, artifact, request, response);
+            return;
+        }
+        CachedArtifact cached = cache.get(artifact, () -> read(context, artifact));
+        if (cached == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        respondWithContent(cached, artifact, request, response);
+    }
+
+    /**
+     * Returns the ETag the artifact is served with now, or null if there is no such artifact. A file
+     * is only hashed again when it changes; anything else is read through the cache, which leaves it
+     * there for the runtimes about to fetch it.
+     */
+    String currentEtag(ActivationContext context, ArtifactCache cache, URI artifact) throws IOException {
+        Path file = context.getBinaryPath(artifact);
+        if (file != null && Files.isRegularFile(file)) {
+            return fileEtag(file, Files.size(file), Files.getLastModifiedTime(file).toMillis());
+        }
+        CachedArtifact cached = cache.get(artifact, () -> read(context, artifact));
+        return cached == null ? null : cached.getEtag();
+    }
+
+    /** Returns the file's cache entry to send gzipped, or null to send the file as it is. */
+    private CachedArtifact compressedFile(
+            ArtifactCache cache, Path file, URI artifact, HttpServletRequest request) throws IOException {
+        long length = Files.size(file);
+        if (!cache.compresses(length) || !wantsGzip(request)) {
+            return null;
+        }
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        URI version = URI.create(artifact + "#" + length + "-" + lastModified);
+        CachedArtifact cached = cache.get(version, () -> Files.readAllBytes(file));
+        return cached != null && cached.getGzipped() != null ? cached : null;
+    }
+
+    private void respondWithFile(
+            ArtifactCache cache, Path file, URI artifact, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        long length = Files.size(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        if (cache.compresses(length)) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        String etag = fileEtag(file, length, lastModified);
+        long[] range = prepare(artifact, length, etag, lastModified, request, response);
+        if (range == null) {
+            return;
+        }
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, range[0]);
+            request.setAttribute(SENDFILE_END, range[0] + range[1]);
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = range[0];
+            long remaining = range[1];
+            while (remaining > 0) {
+                long sent = channel.transferTo(position, remaining, out);
+                if (sent <= 0) {
+                    break;
+                }
+                position += sent;
+                remaining -= sent;
+            }
+        }
+    }
+
+    private void respondWithContent(
+            CachedArtifact cached, URI artifact, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        boolean gzip = cached.getGzipped() != null && wantsGzip(request);
+        if (cached.getGzipped() != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        }
+        ByteBuffer content = gzip ? cached.getGzipped() : cached.getContent();
+        String etag = gzip ? cached.getGzipEtag() : cached.getEtag();
+        long[] range = prepare(artifact, content.remaining(), etag, -1, request, response);
+        if (range == null) {
+            return;
+        }
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, Compression.GZIP);
+        }
+        content.position((int) range[0]).limit((int) (range[0] + range[1]));
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (content.hasRemaining()) {
+            out.write(content);
+        }
+    }
+
+    /**
+     * Sets the response headers and works out which bytes to send, as {@code {start, count}}.
+     * Returns null when no body should be sent: the runtime's copy is current (304) or the
+     * requested range is outside the artifact (416).
+     */
+    private long[] prepare(
+            URI artifact,
+            long length,
+            String etag,
+            long lastModified,
+            HttpServletRequest request,
+            HttpServletResponse response) {
+        ServletWebRequest webRequest = new ServletWebRequest(request, response);
+        if (webRequest.checkNotModified(etag, lastModified)) {
+            return null;
+        }
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+        response.setContentType(MediaTypeFactory.getMediaType(artifact.getPath())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM)
+                .toString());
+
+        HttpRange range = requestedRange(request, etag);
+        if (range == null) {
+            response.setContentLengthLong(length);
+            return new long[] {0, length};
+        }
+        long start = range.getRangeStart(length);
+        long end = range.getRangeEnd(length);
+        if (start >= length || end < start) {
+            response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return null;
+        }
+        response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        response.setContentLengthLong(end - start + 1);
+        return new long[] {start, end - start + 1};
+    }
+
+    /**
+     * Returns the single range asked for, or null to send the whole artifact. Malformed and
+     * multi-part ranges are ignored, as is a range conditional on a different version.
+     */
+    private HttpRange requestedRange(HttpServletRequest request, String etag) {
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        if (rangeHeader == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(rangeHeader);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private String fileEtag(Path file, long length, long lastModified) {
+        return fileDigests.compute(
+                file,
+                (path, cached) -> cached != null && cached.matches(length, lastModified)
+                        ? cached
+                        : new FileDigest(length, lastModified, digest(path)))
+                .etag;
+    }
+
+    private static byte[] read(ActivationContext context, URI artifact) throws IOException {
+        try (InputStream binary = context.getBinary(artifact)) {
+            return binary == null ? null : binary.readAllBytes();
+        }
+    }
+
+    private static boolean wantsGzip(HttpServletRequest request) {
+        return request.getHeader(HttpHeaders.RANGE) == null
+                && Compression.acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+    }
+
+    private static String digest(Path file) {
+        try (InputStream in = Files.newInputStream(file)) {
+            return DigestUtils.md5DigestAsHex(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read artifact " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static String etag(String hash) {
+        return "\"" + hash + "\"";
+    }
+
+    private static final class FileDigest {
+        private final long length;
+        private final long lastModified;
+        private final String etag;
+
+        private FileDigest(long length, long lastModified, String hash) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.etag = etag(hash);
+        }
+
+        private boolean matches(long length, long lastModified) {
+            return this.length == length && this.lastModified == lastModified;
+        }
+    }
+}
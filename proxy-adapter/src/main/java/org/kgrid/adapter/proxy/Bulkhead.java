@@ -0,0 +1,43 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Limits how many requests a runtime instance can be working on at once, so a stalled runtime
+ * holds at most that many of the activator's threads. Requests over the limit are refused at once
+ * rather than queued.
+ */
+public class Bulkhead {
+
+    private final int maxConcurrentCalls;
+    private final Semaphore permits;
+
+    /** @param maxConcurrentCalls the most requests in flight at once, or 0 for no limit */
+    public Bulkhead(int maxConcurrentCalls) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.permits = maxConcurrentCalls > 0 ? new Semaphore(maxConcurrentCalls) : null;
+    }
+
+    boolean tryAcquire() {
+        return permits == null || permits.tryAcquire();
+    }
+
+    void release() {
+        if (permits != null) {
+            permits.release();
+        }
+    }
+
+    public int getMaxConcurrentCalls() {
+        return maxConcurrentCalls;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("maxConcurrentCalls", maxConcurrentCalls);
+        stats.put("availableCalls", permits == null ? -1 : permits.availablePermits());
+        return stats;
+    }
+}
@@ -0,0 +1,184 @@
+package org.kgrid.adapter.proxy;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stops sending requests to a runtime instance that keeps failing or answering slowly. The breaker
+ * records the outcome of the last {@code windowSize} calls and opens when the share of failed or
+ * slow calls reaches its threshold. While open every call is refused at once; after
+ * {@code openDuration} a few probe calls are let through, and the breaker closes again if they all
+ * succeed quickly or reopens if any of them doesn't. Client errors are the caller's fault, not the
+ * runtime's, so they count as successes.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /** The thresholds shared by the breakers of every runtime. */
+    public static class Config {
+        private final double failureRateThreshold;
+        private final double slowCallRateThreshold;
+        private final Duration slowCallDuration;
+        private final int windowSize;
+        private final int minimumCalls;
+        private final Duration openDuration;
+        private final int halfOpenCalls;
+
+        /**
+         * @param failureRateThreshold percentage of failed calls in the window that opens the breaker
+         * @param slowCallRateThreshold percentage of slow calls in the window that opens the breaker
+         * @param slowCallDuration calls taking at least this long are slow
+         * @param windowSize number of recent calls the rates are computed over
+         * @param minimumCalls calls that must be recorded before the breaker can open
+         * @param openDuration how long the breaker refuses calls before probing the runtime
+         * @param halfOpenCalls probe calls that must all succeed to close the breaker
+         */
+        public Config(
+                double failureRateThreshold,
+                double slowCallRateThreshold,
+                Duration slowCallDuration,
+                int windowSize,
+                int minimumCalls,
+                Duration openDuration,
+                int halfOpenCalls) {
+            this.failureRateThreshold = failureRateThreshold;
+            this.slowCallRateThreshold = slowCallRateThreshold;
+            this.slowCallDuration = slowCallDuration;
+            this.windowSize = Math.max(windowSize, 1);
+            this.minimumCalls = Math.max(Math.min(minimumCalls, this.windowSize), 1);
+            this.openDuration = openDuration;
+            this.halfOpenCalls = Math.max(halfOpenCalls, 1);
+        }
+    }
+
+    private static final byte FAILED = 1;
+    private static final byte SLOW = 2;
+
+    private final Config config;
+    private final byte[] window;
+    private int recorded;
+    private int next;
+    private int failures;
+    private int slowCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesLeft;
+    private int probesSucceeded;
+    private long rejected;
+
+    public CircuitBreaker(Config config) {
+        this.config = config;
+        this.window = new byte[config.windowSize];
+    }
+
+    /**
+     * Returns whether a call may be sent now, moving an open breaker to half-open once it has been
+     * open long enough. Every permitted call must be followed by {@link #onResult}.
+     */
+    synchronized boolean tryAcquirePermission() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < config.openDuration.toNanos()) {
+                rejected++;
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesLeft = config.halfOpenCalls;
+            probesSucceeded = 0;
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesLeft == 0) {
+                rejected++;
+                return false;
+            }
+            probesLeft--;
+        }
+        return true;
+    }
+
+    /** Whether a call would be refused right now, without claiming a probe. */
+    synchronized boolean isRefusingCalls() {
+        return state == State.OPEN && System.nanoTime() - openedAt < config.openDuration.toNanos()
+                || state == State.HALF_OPEN && probesLeft == 0;
+    }
+
+    synchronized void onResult(boolean failed, long durationNanos) {
+        boolean slow = durationNanos >= config.slowCallDuration.toNanos();
+        if (state == State.HALF_OPEN) {
+            if (failed || slow) {
+                open();
+            } else if (++probesSucceeded >= config.halfOpenCalls) {
+                close();
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A call that started before the breaker opened
+            return;
+        }
+        if (recorded == window.length) {
+            failures -= window[next] & FAILED;
+            slowCalls -= (window[next] & SLOW) >> 1;
+        } else {
+            recorded++;
+        }
+        window[next] = (byte) ((failed ? FAILED : 0) | (slow ? SLOW : 0));
+        failures += failed ? 1 : 0;
+        slowCalls += slow ? 1 : 0;
+        next = (next + 1) % window.length;
+        if (recorded >= config.minimumCalls
+                && (failureRate() >= config.failureRateThreshold
+                        || slowCallRate() >= config.slowCallRateThreshold)) {
+            open();
+        }
+    }
+
+    /**
+     * Ends a permitted call that was cancelled before it had an outcome, such as the slower of two
+     * hedged calls. Nothing is recorded, but a half-open breaker gets its probe back.
+     */
+    synchronized void onCancelled() {
+        if (state == State.HALF_OPEN && probesLeft < config.halfOpenCalls - probesSucceeded) {
+            probesLeft++;
+        }
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && System.nanoTime() - openedAt >= config.openDuration.toNanos()) {
+            return State.HALF_OPEN;
+        }
+        return state;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", getState().name().toLowerCase().replace('_', '-'));
+        stats.put("failureRate", failureRate());
+        stats.put("slowCallRate", slowCallRate());
+        stats.put("calls", recorded);
+        stats.put("rejected", rejected);
+        return stats;
+    }
+
+    private double failureRate() {
+        return recorded == 0 ? 0 : failures * 100.0 / recorded;
+    }
+
+    private double slowCallRate() {
+        return recorded == 0 ? 0 : slowCalls * 100.0 / recorded;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        recorded = 0;
+        next = 0;
+        failures = 0;
+        slowCalls = 0;
+    }
+}
@@ -0,0 +1,227 @@
+package org.kgrid.adapter.proxy;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RequestCallback;
+
+/**
+ * Compresses request bodies sent to runtimes, for runtimes that list the encoding under
+ * {@code "requestEncodings"} in their details. Bodies smaller than the minimum size are sent as
+ * they are, since compressing them saves less than it costs. Also holds the gzip and deflate
+ * helpers used to decompress runtime responses and to compress served artifacts.
+ */
+class Compression {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+    static final String ACCEPT_ENCODING = GZIP + ", " + DEFLATE;
+
+    private final List<String> requestEncodings;
+    private final int minSize;
+
+    /**
+     * @param requestEncodings the encodings request bodies may be sent with, in order of preference
+     * @param minSize the smallest body, in bytes, worth compressing
+     */
+    Compression(List<String> requestEncodings, int minSize) {
+        this.requestEncodings = List.copyOf(requestEncodings);
+        this.minSize = minSize;
+    }
+
+    /** Reads a comma separated list of encodings, ignoring those this class can't write. */
+    static Compression parse(String requestEncodings, int minSize) {
+        List<String> encodings = new ArrayList<>();
+        for (String encoding : requestEncodings.split(",")) {
+            String name = encoding.trim().toLowerCase(Locale.ROOT);
+            if ((GZIP.equals(name) || DEFLATE.equals(name)) && !encodings.contains(name)) {
+                encodings.add(name);
+            }
+        }
+        return new Compression(encodings, minSize);
+    }
+
+    int getMinSize() {
+        return minSize;
+    }
+
+    /** The first encoding the runtime accepts request bodies in, or null to send them as they are. */
+    String requestEncoding(RuntimeDescriptor runtime) {
+        if (runtime == null) {
+            return null;
+        }
+        for (String encoding : requestEncodings) {
+            if (runtime.acceptsRequestEncoding(encoding)) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    /** Compresses the body if it is big enough to be worth it, and returns null if not. */
+    byte[] compress(byte[] body, String encoding) throws IOException {
+        return encoding == null || body.length < minSize ? null : encode(body, encoding);
+    }
+
+    /**
+     * Collects what the callback writes and sends it compressed if it is big enough, setting the
+     * {@code Content-Encoding} and {@code Content-Length} to match.
+     */
+    RequestCallback compressing(RequestCallback callback, String encoding) {
+        if (encoding == null) {
+            return callback;
+        }
+        return request -> {
+            BufferedRequest buffered = new BufferedRequest(request);
+            callback.doWithRequest(buffered);
+            byte[] body = buffered.body.toByteArray();
+            byte[] compressed = compress(body, encoding);
+            if (compressed != null) {
+                request.getHeaders().set(HttpHeaders.CONTENT_ENCODING, encoding);
+                request.getHeaders().setContentLength(compressed.length);
+                body = compressed;
+            }
+            request.getBody().write(body);
+        };
+    }
+
+    /** Wraps the stream so what is written to it is compressed; {@code finish} must be called. */
+    static DeflaterOutputStream encoder(OutputStream out, String encoding) throws IOException {
+        return GZIP.equals(encoding) ? new GZIPOutputStream(out, 8192) : new DeflaterOutputStream(out);
+    }
+
+    static byte[] encode(byte[] content, String encoding) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(Math.max(64, content.length / 4));
+        DeflaterOutputStream encoder = encoder(compressed, encoding);
+        encoder.write(content);
+        encoder.finish();
+        return compressed.toByteArray();
+    }
+
+    /**
+     * Wraps the stream so it is read decompressed, if the encoding is one this class knows. The
+     * encoded stream isn't read until the first read, so this can be called on any thread.
+     */
+    static InputStream decoding(InputStream in, String encoding) {
+        if (in == null || encoding == null) {
+            return in;
+        }
+        String name = encoding.trim().toLowerCase(Locale.ROOT);
+        if (!GZIP.equals(name) && !DEFLATE.equals(name)) {
+            return in;
+        }
+        return new FilterInputStream(in) {
+            private InputStream decoder;
+
+            @Override
+            public int read() throws IOException {
+                return decoder().read();
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return decoder().read(b, off, len);
+            }
+
+            @Override
+            public int available() throws IOException {
+                return decoder == null ? 0 : decoder.available();
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (decoder != null) {
+                    decoder.close();
+                }
+                super.close();
+            }
+
+            private InputStream decoder() throws IOException {
+                if (decoder == null) {
+                    decoder = GZIP.equals(name) ? new GZIPInputStream(in, 8192) : new InflaterInputStream(in);
+                }
+                return decoder;
+            }
+        };
+    }
+
+    /** Whether an {@code Accept-Encoding} header allows a gzipped response. */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            String name = parts[0].trim();
+            if (!GZIP.equalsIgnoreCase(name) && !"x-gzip".equalsIgnoreCase(name) && !"*".equals(name)) {
+                continue;
+            }
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        return Double.parseDouble(parameter.substring(2)) > 0;
+                    } catch (NumberFormatException e) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /** Holds a request's body in memory so it can be compressed once it is complete. */
+    private static class BufferedRequest implements ClientHttpRequest {
+        private final ClientHttpRequest request;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+        private BufferedRequest(ClientHttpRequest request) {
+            this.request = request;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            return request.execute();
+        }
+
+        @Override
+        public OutputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public String getMethodValue() {
+            return request.getMethodValue();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+    }
+}
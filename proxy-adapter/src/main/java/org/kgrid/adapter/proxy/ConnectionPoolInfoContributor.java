@@ -0,0 +1,41 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.info.Info;
+import org.springframework.boot.actuate.info.InfoContributor;
+import org.springframework.stereotype.Component;
+
+@Component
+public class ConnectionPoolInfoContributor implements InfoContributor {
+    @Autowired
+    PoolingHttpClientConnectionManager proxyConnectionManager;
+
+    @Override
+    public void contribute(Info.Builder builder) {
+        builder.withDetail("runtimeConnectionPool", getPoolStats());
+    }
+
+    public Map<String, Object> getPoolStats() {
+        Map<String, Object> stats = toMap(proxyConnectionManager.getTotalStats());
+        Map<String, Object> runtimes = new LinkedHashMap<>();
+        for (HttpRoute route : proxyConnectionManager.getRoutes()) {
+            runtimes.put(route.getTargetHost().toURI(), toMap(proxyConnectionManager.getStats(route)));
+        }
+        stats.put("runtimes", runtimes);
+        return stats;
+    }
+
+    private Map<String, Object> toMap(PoolStats poolStats) {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("leased", poolStats.getLeased());
+        stats.put("available", poolStats.getAvailable());
+        stats.put("pending", poolStats.getPending());
+        stats.put("max", poolStats.getMax());
+        return stats;
+    }
+}
@@ -0,0 +1,70 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Picks which runtime instance serves a request when an endpoint is activated on several. The
+ * built-in strategies are selected with {@code kgrid.adapter.proxy.dispatch}; others can be
+ * plugged in by implementing this interface.
+ */
+public interface DispatchStrategy {
+
+    String ROUND_ROBIN = "round-robin";
+    String LEAST_OUTSTANDING = "least-outstanding";
+    String EWMA = "ewma";
+
+    /** Chooses one of the candidates, which is never empty. */
+    RuntimeTarget choose(List<RuntimeTarget> candidates);
+
+    /** Returns the built-in strategy with this name, or round robin if there is none. */
+    static DispatchStrategy named(String name) {
+        if (LEAST_OUTSTANDING.equalsIgnoreCase(name)) {
+            return leastOutstanding();
+        }
+        if (EWMA.equalsIgnoreCase(name)) {
+            return ewma();
+        }
+        return roundRobin();
+    }
+
+    /** Takes the instances in turn. */
+    static DispatchStrategy roundRobin() {
+        AtomicInteger next = new AtomicInteger();
+        return candidates -> candidates.get(Math.floorMod(next.getAndIncrement(), candidates.size()));
+    }
+
+    /** Takes the instance with the fewest requests in progress. */
+    static DispatchStrategy leastOutstanding() {
+        return candidates -> lowest(candidates, target -> target.getLoad().getOutstanding());
+    }
+
+    /**
+     * Takes the instance with the lowest moving average response time, weighted by the requests it
+     * has in progress. Instances that haven't answered yet are tried first.
+     */
+    static DispatchStrategy ewma() {
+        return candidates -> lowest(
+                candidates,
+                target -> target.getLoad().getAverageNanos() * (target.getLoad().getOutstanding() + 1));
+    }
+
+    /** Returns the candidate with the lowest score, starting from a random one so ties are spread out. */
+    private static RuntimeTarget lowest(List<RuntimeTarget> candidates, ToDoubleFunction<RuntimeTarget> score) {
+        int size = candidates.size();
+        int offset = size == 1 ? 0 : ThreadLocalRandom.current().nextInt(size);
+        RuntimeTarget best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            RuntimeTarget candidate = candidates.get((offset + i) % size);
+            double candidateScore = score.applyAsDouble(candidate);
+            if (best == null || candidateScore < bestScore) {
+                best = candidate;
+                bestScore = candidateScore;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,82 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.List;
+import java.util.Map;
+import org.kgrid.adapter.api.Executor;
+
+/**
+ * What an endpoint was last activated with: the fingerprint of its deployment spec and artifacts,
+ * the runtime instances it was activated on and the executor built for them. A refresh with the
+ * same fingerprint can skip the runtimes that still hold the endpoint, and reuse the executor
+ * outright when that is all of them.
+ *
+ * <p>A runtime only counts as still holding the endpoint if its /info, fetched just before the
+ * refresh, reports an {@code instanceId} and the id hasn't changed, since a restarted runtime has
+ * lost its endpoints. Runtimes that don't report one, or don't answer, are always activated again.
+ */
+final class EndpointActivation {
+
+    private final String fingerprint;
+    private final Map<String, String> instanceIds;
+    private final Map<String, RuntimeTarget> targets;
+    private final Executor executor;
+
+    /**
+     * @param instanceIds the instance id of each runtime the endpoint was activated on, by runtime id
+     * @param targets the endpoint on each of those runtimes, by runtime id
+     */
+    EndpointActivation(
+            String fingerprint, Map<String, String> instanceIds, Map<String, RuntimeTarget> targets, Executor executor) {
+        this.fingerprint = fingerprint;
+        this.instanceIds = Map.copyOf(instanceIds);
+        this.targets = Map.copyOf(targets);
+        this.executor = executor;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /** Whether the endpoint's spec and artifacts are the ones it was activated with. */
+    boolean isUnchanged(String currentFingerprint) {
+        return fingerprint.equals(currentFingerprint);
+    }
+
+    /** Whether the runtime reported an instance id when the endpoint was activated on it. */
+    boolean hasInstanceId(String runtimeId) {
+        return instanceIds.containsKey(runtimeId);
+    }
+
+    /**
+     * Returns the endpoint already activated on the runtime, or null if the endpoint or the
+     * runtime has changed since and it must be activated again.
+     *
+     * @param currentInstanceId the instance id the runtime reports now, or null if it reports none
+     */
+    RuntimeTarget reusableTarget(String runtimeId, String currentInstanceId, String currentFingerprint) {
+        if (!isUnchanged(currentFingerprint)
+                || currentInstanceId == null
+                || !currentInstanceId.equals(instanceIds.get(runtimeId))) {
+            return null;
+        }
+        return targets.get(runtimeId);
+    }
+
+    /**
+     * Whether the executor still serves exactly these runtimes, none of which needs the endpoint again.
+     *
+     * @param currentInstanceIds the instance id each runtime reports now, by runtime id
+     */
+    boolean isCurrent(
+            List<RuntimeDescriptor> instances, Map<String, String> currentInstanceIds, String currentFingerprint) {
+        if (instances.size() != targets.size()) {
+            return false;
+        }
+        for (RuntimeDescriptor runtime : instances) {
+            if (reusableTarget(runtime.getId(), currentInstanceIds.get(runtime.getId()), currentFingerprint) == null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,131 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import org.kgrid.adapter.api.AdapterUnavailableException;
+
+/**
+ * Runs blocking calls to runtimes off the caller's thread, so an activator that executes through
+ * {@code executeAsync} can release its servlet thread while the runtime works. Calls run on virtual
+ * threads when the JVM has them, and otherwise on a bounded pool of daemon threads. Either way at
+ * most {@code maxConcurrentCalls} run at once and {@code maxQueuedCalls} more wait; beyond that
+ * calls are refused with an {@link AdapterUnavailableException}.
+ */
+class ExecutionPool {
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final int maxConcurrentCalls;
+    private final int maxQueuedCalls;
+    private final boolean virtual;
+    private final ExecutorService threads;
+    private final Semaphore admitted;
+    private final Semaphore running;
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    /** @param useVirtualThreads run calls on virtual threads if this JVM has them */
+    ExecutionPool(int maxConcurrentCalls, int maxQueuedCalls, boolean useVirtualThreads) {
+        this.maxConcurrentCalls = maxConcurrentCalls;
+        this.maxQueuedCalls = maxQueuedCalls;
+        ExecutorService virtualThreads = useVirtualThreads ? virtualThreads() : null;
+        this.virtual = virtualThreads != null;
+        if (virtual) {
+            threads = virtualThreads;
+            running = new Semaphore(maxConcurrentCalls);
+        } else {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                    maxConcurrentCalls, maxConcurrentCalls, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "proxy-execution-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+            pool.allowCoreThreadTimeOut(true);
+            threads = pool;
+            running = null;
+        }
+        admitted = new Semaphore(maxConcurrentCalls + maxQueuedCalls);
+    }
+
+    /** Runs the call on the pool, or fails at once if the pool and its queue are full. */
+    <T> CompletableFuture<T> submit(Supplier<T> call) {
+        if (!admitted.tryAcquire()) {
+            rejected.increment();
+            return CompletableFuture.failedFuture(new AdapterUnavailableException(String.format(
+                    "The proxy adapter is saturated: %d requests are in progress and %d are waiting",
+                    maxConcurrentCalls, maxQueuedCalls)));
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            threads.execute(() -> run(call, result));
+        } catch (RejectedExecutionException e) {
+            admitted.release();
+            rejected.increment();
+            result.completeExceptionally(new AdapterUnavailableException("The proxy adapter is shutting down", e));
+        }
+        return result;
+    }
+
+    private <T> void run(Supplier<T> call, CompletableFuture<T> result) {
+        try {
+            if (running != null) {
+                running.acquireUninterruptibly();
+            }
+            active.incrementAndGet();
+            try {
+                result.complete(call.get());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            } finally {
+                active.decrementAndGet();
+                if (running != null) {
+                    running.release();
+                }
+            }
+        } finally {
+            admitted.release();
+        }
+    }
+
+    void shutdown() {
+        threads.shutdown();
+    }
+
+    boolean isVirtual() {
+        return virtual;
+    }
+
+    Map<String, Object> getStats() {
+        int outstanding = maxConcurrentCalls + maxQueuedCalls - admitted.availablePermits();
+        int inProgress = active.get();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("threads", virtual ? "virtual" : "platform");
+        stats.put("maxConcurrentCalls", maxConcurrentCalls);
+        stats.put("maxQueuedCalls", maxQueuedCalls);
+        stats.put("active", inProgress);
+        stats.put("queued", Math.max(0, outstanding - inProgress));
+        stats.put("rejected", rejected.sum());
+        return stats;
+    }
+
+    /** A virtual thread per task executor, or null before Java 21. */
+    private static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+}
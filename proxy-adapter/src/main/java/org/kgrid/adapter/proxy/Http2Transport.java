@@ -0,0 +1,201 @@
+package org.kgrid.adapter.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.UnknownHttpStatusCodeException;
+
+/**
+ * Sends requests to runtimes that advertise {@code "http2": true} with the JDK's HTTP client, which
+ * multiplexes all the concurrent requests to a runtime over one HTTP/2 connection rather than
+ * taking a pooled connection for each. Plain http runtimes are upgraded with h2c, and a runtime
+ * that doesn't take the upgrade is spoken to over HTTP/1.1. Error statuses are thrown as the same
+ * exceptions {@code RestTemplate} throws, so both transports fail the same way.
+ *
+ * <p>Servers commonly refuse to upgrade a request that has a body, so before the first request to
+ * a plain http runtime the connection is opened with a bodiless {@code OPTIONS} request, and opened
+ * again that way if a later response shows the runtime is back on HTTP/1.1.
+ *
+ * <p>Unlike the other clients this one doesn't decompress responses itself, so it asks for gzip or
+ * deflate and decodes the body as it is read.
+ */
+class Http2Transport {
+
+    private final HttpClient client;
+    private final Duration requestTimeout;
+    private final Map<String, CompletableFuture<HttpClient.Version>> connections = new ConcurrentHashMap<>();
+
+    /** @param requestTimeout how long to wait for a runtime's response, or zero to wait forever */
+    Http2Transport(Duration connectTimeout, Duration requestTimeout) {
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .build();
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Posts the body and returns the response, whose body the caller must read or close.
+     *
+     * @param headers the body's content type and any other headers to send with it
+     */
+    HttpResponse<InputStream> send(URI endpoint, HttpHeaders headers, HttpRequest.BodyPublisher body)
+            throws IOException {
+        HttpResponse<InputStream> response;
+        try {
+            connect(endpoint).join();
+            response = client.send(
+                    request(endpoint, headers, body),
+                    info -> HttpResponse.BodySubscribers.mapping(
+                            HttpResponse.BodySubscribers.ofInputStream(),
+                            in -> Compression.decoding(in, contentEncoding(info))));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for " + endpoint);
+        }
+        checkVersion(endpoint, response);
+        if (response.statusCode() >= 400) {
+            try (InputStream errorBody = response.body()) {
+                throw error(response, errorBody.readAllBytes());
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Posts the body and completes with the whole response body.
+     *
+     * @param headers the body's content type and any other headers to send with it
+     */
+    CompletableFuture<HttpResponse<byte[]>> sendAsync(URI endpoint, HttpHeaders headers, byte[] body) {
+        return connect(endpoint)
+                .thenCompose(version -> client.sendAsync(
+                        request(endpoint, headers, HttpRequest.BodyPublishers.ofByteArray(body)),
+                        info -> HttpResponse.BodySubscribers.mapping(
+                                HttpResponse.BodySubscribers.ofByteArray(),
+                                bytes -> decode(bytes, contentEncoding(info)))))
+                .thenApply(response -> {
+                    checkVersion(endpoint, response);
+                    if (response.statusCode() >= 400) {
+                        throw error(response, response.body());
+                    }
+                    return response;
+                });
+    }
+
+    /** Writes a request body the way {@code RestTemplate}'s message converters would. */
+    static byte[] serialize(Object input) throws IOException {
+        if (input == null) {
+            return new byte[0];
+        }
+        if (input instanceof byte[]) {
+            return (byte[]) input;
+        }
+        if (input instanceof String) {
+            return ((String) input).getBytes(StandardCharsets.UTF_8);
+        }
+        return RuntimeResultExtractor.OBJECT_MAPPER.writeValueAsBytes(input);
+    }
+
+    static MediaType contentType(HttpResponse<?> response) {
+        return response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+                .map(MediaType::parseMediaType)
+                .orElse(null);
+    }
+
+    static Charset charset(HttpResponse<?> response) {
+        MediaType contentType = contentType(response);
+        return contentType == null ? null : contentType.getCharset();
+    }
+
+    /** How the runtime compressed the response body, or null if it didn't. */
+    private static String contentEncoding(HttpResponse.ResponseInfo response) {
+        return response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).orElse(null);
+    }
+
+    private static byte[] decode(byte[] body, String contentEncoding) {
+        if (contentEncoding == null) {
+            return body;
+        }
+        try (InputStream decoded = Compression.decoding(new ByteArrayInputStream(body), contentEncoding)) {
+            return decoded.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Completes with the protocol the runtime's connection was opened with. */
+    private CompletableFuture<HttpClient.Version> connect(URI endpoint) {
+        if (!"http".equalsIgnoreCase(endpoint.getScheme())) {
+            // TLS connections agree on HTTP/2 while they are set up
+            return CompletableFuture.completedFuture(HttpClient.Version.HTTP_2);
+        }
+        return connections.computeIfAbsent(origin(endpoint), origin -> {
+            HttpRequest.Builder options = HttpRequest.newBuilder(endpoint)
+                    .method("OPTIONS", HttpRequest.BodyPublishers.noBody());
+            if (!requestTimeout.isZero()) {
+                options.timeout(requestTimeout);
+            }
+            return client.sendAsync(options.build(), HttpResponse.BodyHandlers.discarding())
+                    .handle((response, error) -> response == null ? HttpClient.Version.HTTP_1_1 : response.version());
+        });
+    }
+
+    /** Opens the connection again before the next request if it fell back from HTTP/2. */
+    private void checkVersion(URI endpoint, HttpResponse<?> response) {
+        if (response.version() == HttpClient.Version.HTTP_2) {
+            return;
+        }
+        CompletableFuture<HttpClient.Version> connection = connections.get(origin(endpoint));
+        if (connection != null && connection.getNow(null) == HttpClient.Version.HTTP_2) {
+            connections.remove(origin(endpoint), connection);
+        }
+    }
+
+    private static String origin(URI endpoint) {
+        return endpoint.getScheme() + "://" + endpoint.getRawAuthority();
+    }
+
+    private HttpRequest request(URI endpoint, HttpHeaders headers, HttpRequest.BodyPublisher body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(endpoint)
+                .header(HttpHeaders.ACCEPT_ENCODING, Compression.ACCEPT_ENCODING)
+                .POST(body);
+        headers.forEach((name, values) -> values.forEach(value -> request.header(name, value)));
+        if (!requestTimeout.isZero()) {
+            request.timeout(requestTimeout);
+        }
+        return request.build();
+    }
+
+    private static RestClientResponseException error(HttpResponse<?> response, byte[] body) {
+        HttpHeaders headers = new HttpHeaders();
+        response.headers().map().forEach(headers::addAll);
+        Charset charset = charset(response);
+        HttpStatus status = HttpStatus.resolve(response.statusCode());
+        if (status == null) {
+            return new UnknownHttpStatusCodeException(response.statusCode(), "", headers, body, charset);
+        }
+        if (status.is4xxClientError()) {
+            return HttpClientErrorException.create(status, status.getReasonPhrase(), headers, body, charset);
+        }
+        return HttpServerErrorException.create(status, status.getReasonPhrase(), headers, body, charset);
+    }
+}
@@ -0,0 +1,45 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the response times of an endpoint's most recent successful requests and reports
+ * percentiles of them. Percentiles are recomputed every {@link #RECOMPUTE_EVERY} samples rather
+ * than on each request, since only a rough, current figure is needed.
+ */
+class LatencyTracker {
+
+    static final int WINDOW = 1024;
+    static final int RECOMPUTE_EVERY = 64;
+
+    private final long[] samples = new long[WINDOW];
+    private int count;
+    private int next;
+    private int sinceSorted = RECOMPUTE_EVERY;
+    private long[] sorted = new long[0];
+
+    synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % WINDOW;
+        count = Math.min(count + 1, WINDOW);
+        sinceSorted++;
+    }
+
+    synchronized int getCount() {
+        return count;
+    }
+
+    /** Returns the percentile, from 0 to 100, of the recorded times in nanoseconds, or 0 if none. */
+    synchronized long percentile(double percentile) {
+        if (count == 0) {
+            return 0;
+        }
+        if (sinceSorted >= RECOMPUTE_EVERY || sorted.length != count) {
+            sorted = Arrays.copyOf(samples, count);
+            Arrays.sort(sorted);
+            sinceSorted = 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,299 @@
+package org.kgrid.adapter.proxy;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.LongAdder;
+import org.kgrid.adapter.api.ClientRequest;
+import org.kgrid.adapter.api.Executor;
+import org.kgrid.adapter.api.ExecutorResponse;
+
+/**
+ * Remembers the results of an endpoint whose deployment spec declares it a pure function with
+ * {@code cache: {ttl: <milliseconds>, maxEntries: <count>}}, and answers repeat requests without
+ * calling the runtime. Requests are the same when their bodies are the same JSON, in any key
+ * order, sent with the same content type and accept headers. Only successful results are kept.
+ * When the cache is full the least recently used result is dropped; without a ttl results are kept
+ * until then. Requests and responses with streaming bodies are passed through and never cached.
+ */
+class MemoizingExecutor implements Executor {
+
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final ObjectMapper CANONICAL_MAPPER =
+            new ObjectMapper()
+                    .configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true)
+                    .configure(DeserializationFeature.FAIL_ON_TRAILING_TOKENS, true);
+
+    private final Executor delegate;
+    private final Duration ttl;
+    private final int maxEntries;
+    private final LinkedHashMap<String, CachedResult> results = new LinkedHashMap<>(16, 0.75f, true);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+    /** Counts invalidations, so a result fetched before one isn't stored after it. */
+    private long epoch;
+
+    MemoizingExecutor(Executor delegate, Duration ttl, int maxEntries) {
+        this.delegate = delegate;
+        this.ttl = ttl;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Wraps the executor if the deployment spec asks for caching, and returns it unchanged if not.
+     */
+    static Executor fromSpec(Executor executor, JsonNode deploymentSpec) {
+        JsonNode cacheSpec = deploymentSpec.get("cache");
+        if (cacheSpec == null || !cacheSpec.isObject()) {
+            return executor;
+        }
+        long ttl = cacheSpec.path("ttl").asLong(0);
+        int maxEntries = cacheSpec.path("maxEntries").asInt(DEFAULT_MAX_ENTRIES);
+        if (maxEntries <= 0) {
+            return executor;
+        }
+        return new MemoizingExecutor(executor, ttl > 0 ? Duration.ofMillis(ttl) : null, maxEntries);
+    }
+
+    /** Kept for activators that still call the deprecated method, which the delegate must support. */
+    @Deprecated
+    @Override
+    public Object execute(Object input, String contentType) {
+        String key = key(input, contentType, null);
+        long missEpoch = epoch();
+        CachedResult cached = lookup(key);
+        if (cached != null) {
+            return cached.copyOfBody();
+        }
+        Object result = delegate.execute(input, contentType);
+        store(key, new CachedResult(result, null), missEpoch);
+        return copy(result);
+    }
+
+    @Override
+    public ExecutorResponse execute(ClientRequest request) {
+        if (request.isStreaming()) {
+            return delegate.execute(request);
+        }
+        String key = key(request);
+        long missEpoch = epoch();
+        CachedResult cached = lookup(key);
+        if (cached != null) {
+            return cached.toResponse(request);
+        }
+        ExecutorResponse response = delegate.execute(request);
+        store(key, cachedResult(response), missEpoch);
+        return response;
+    }
+
+    @Override
+    public CompletionStage<ExecutorResponse> executeAsync(ClientRequest request) {
+        if (request.isStreaming()) {
+            return delegate.executeAsync(request);
+        }
+        String key = key(request);
+        long missEpoch = epoch();
+        CachedResult cached = lookup(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached.toResponse(request));
+        }
+        return delegate.executeAsync(request)
+                .thenApply(response -> {
+                    store(key, cachedResult(response), missEpoch);
+                    return response;
+                });
+    }
+
+    /** Answers the requests it can from the cache and sends only the rest on to the runtime. */
+    @Override
+    public List<ExecutorResponse> executeBatch(List<ClientRequest> requests) {
+        ExecutorResponse[] responses = new ExecutorResponse[requests.size()];
+        List<ClientRequest> uncached = new ArrayList<>();
+        List<Integer> uncachedIndexes = new ArrayList<>();
+        List<String> uncachedKeys = new ArrayList<>();
+        long missEpoch = epoch();
+        for (int i = 0; i < requests.size(); i++) {
+            String key = requests.get(i).isStreaming() ? null : key(requests.get(i));
+            CachedResult cached = key == null ? null : lookup(key);
+            if (cached != null) {
+                responses[i] = cached.toResponse(requests.get(i));
+            } else {
+                uncached.add(requests.get(i));
+                uncachedIndexes.add(i);
+                uncachedKeys.add(key);
+            }
+        }
+        if (!uncached.isEmpty()) {
+            List<ExecutorResponse> executed = delegate.executeBatch(uncached);
+            for (int i = 0; i < executed.size(); i++) {
+                store(uncachedKeys.get(i), cachedResult(executed.get(i)), missEpoch);
+                responses[uncachedIndexes.get(i)] = executed.get(i);
+            }
+        }
+        return List.of(responses);
+    }
+
+    /**
+     * Forgets every cached result, as when the endpoint is activated again. Results of requests
+     * already sent to the runtime are not stored when they arrive.
+     */
+    synchronized void invalidate() {
+        epoch++;
+        results.clear();
+    }
+
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("expirations", expirations.sum());
+        synchronized (this) {
+            stats.put("entries", results.size());
+        }
+        stats.put("maxEntries", maxEntries);
+        stats.put("ttl", ttl == null ? 0 : ttl.toMillis());
+        return stats;
+    }
+
+    private synchronized CachedResult lookup(String key) {
+        CachedResult cached = results.get(key);
+        if (cached != null && cached.isExpired()) {
+            results.remove(key);
+            expirations.increment();
+            cached = null;
+        }
+        if (cached == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return cached;
+    }
+
+    private synchronized long epoch() {
+        return epoch;
+    }
+
+    private synchronized void store(String key, CachedResult result, long missEpoch) {
+        if (key == null || result.isStreaming() || missEpoch != epoch) {
+            return;
+        }
+        results.put(key, result);
+        Iterator<CachedResult> eldest = results.values().iterator();
+        while (results.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    private String key(ClientRequest request) {
+        String contentType = null;
+        String accept = null;
+        if (request.getHeaders() != null) {
+            contentType = request.getHeaders().firstValue("content-type").orElse(null);
+            accept = String.join(",", request.getHeaders().allValues("accept"));
+        }
+        return key(request.getBody(), contentType, accept);
+    }
+
+    private String key(Object body, String contentType, String accept) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(String.valueOf(contentType).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(String.valueOf(accept).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(canonicalBody(body, contentType));
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private byte[] canonicalBody(Object body, String contentType) {
+        if (body == null) {
+            return new byte[0];
+        }
+        if (body instanceof byte[]) {
+            return (byte[]) body;
+        }
+        if (body instanceof String && !isJson(contentType)) {
+            return ((String) body).getBytes(StandardCharsets.UTF_8);
+        }
+        try {
+            // Maps are written with sorted keys, so objects with the same fields hash the same
+            Object tree = body instanceof String
+                    ? CANONICAL_MAPPER.readValue((String) body, Object.class)
+                    : CANONICAL_MAPPER.convertValue(body, Object.class);
+            return CANONICAL_MAPPER.writeValueAsBytes(tree);
+        } catch (IllegalArgumentException | JsonProcessingException e) {
+            return String.valueOf(body).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.toLowerCase().contains("json");
+    }
+
+    private CachedResult cachedResult(ExecutorResponse response) {
+        return new CachedResult(response.getBody(), response.getHeaders());
+    }
+
+    private static Object copy(Object result) {
+        return result instanceof JsonNode ? ((JsonNode) result).deepCopy() : result;
+    }
+
+    private final class CachedResult {
+        private final Object body;
+        private final Map<String, List<String>> headers;
+        private final long expiresAt;
+
+        private CachedResult(Object body, Map<String, List<String>> headers) {
+            this.body = copy(body);
+            this.headers = headers == null ? null : new HashMap<>(headers);
+            this.expiresAt = ttl == null ? 0 : System.nanoTime() + ttl.toNanos();
+        }
+
+        private boolean isStreaming() {
+            return body instanceof InputStream || body instanceof ReadableByteChannel;
+        }
+
+        private boolean isExpired() {
+            return ttl != null && System.nanoTime() - expiresAt > 0;
+        }
+
+        private Object copyOfBody() {
+            return copy(body);
+        }
+
+        private ExecutorResponse toResponse(ClientRequest request) {
+            return new ExecutorResponse(
+                    copyOfBody(), headers == null ? new HashMap<>() : new HashMap<>(headers), request);
+        }
+    }
+}
@@ -1,54 +1,78 @@
 package org.kgrid.adapter.proxy;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import java.io.IOException;
 import java.net.URI;
 import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import org.apache.commons.lang3.StringUtils;
 import org.kgrid.adapter.api.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
 
 @CrossOrigin
 @RestController
 @EnableAsync
 @RequestMapping("/proxy")
 public class ProxyAdapter implements Adapter {
-    static Map<String, ObjectNode> runtimes = new HashMap<>();
-    static String koArtifactsBaseUrl;
-    static ActivationContext activationContext;
     private final Logger log = LoggerFactory.getLogger(getClass());
+    private final RuntimeResultExtractor resultExtractor = new RuntimeResultExtractor();
+
+    @Autowired(required = false)
+    private volatile ProxyState state;
 
     @Autowired
     private RestTemplate restTemplate;
 
+    @Autowired(required = false)
+    private WebClient webClient;
+
+    @Autowired(required = false)
+    private MeterRegistry meterRegistry;
+
     @PostMapping(
             value = "/environments",
             consumes = MediaType.APPLICATION_JSON_VALUE,
@@ -56,8 +80,6 @@ public class ProxyAdapter implements Adapter {
     public ResponseEntity<JsonNode> registerRemoteRuntime(
             @RequestBody ObjectNode runtimeDetails, HttpServletRequest req) {
 
-        boolean update;
-
         JsonNode runtimeEngine = runtimeDetails.at("/engine");
         JsonNode runtimeAddress = runtimeDetails.at("/url");
         JsonNode runtimeForceUpdate = runtimeDetails.at("/forceUpdate");
@@ -73,25 +95,36 @@ public class ProxyAdapter implements Adapter {
             runtimeDetails.put("status", "Not registered: Runtime failed to specify its url");
             return new ResponseEntity<>(runtimeDetails, HttpStatus.BAD_REQUEST);
         }
-        if (runtimes.get(runtimeEngine.asText()) != null) {
-            if (runtimeAddress == runtimes.get(runtimeEngine.asText()).get("url"))
-                log.info("Overwriting remote address for the " + runtimeEngine + " environment. New address is: " + runtimeAddress);
-            runtimeDetails.put("status", "existing runtime");
+        RuntimeDescriptor previous = state().runtimes.register(
+                runtimeEngine.asText(),
+                runtimeAddress.asText(),
+                existing -> {
+                    runtimeDetails.put("status", existing == null ? "new" : "existing runtime");
+                    return new RuntimeDescriptor(runtimeEngine.asText(), runtimeAddress.asText(), runtimeDetails);
+                });
+        boolean update;
+        if (state().restoredRuntimes.remove(RuntimeDescriptor.id(runtimeEngine.asText(), runtimeAddress.asText()))) {
+            // Restored from the snapshot, so this runtime may have restarted and lost its endpoints
+            update = true;
+        } else if (previous != null) {
             update = forceUpdate;
         } else {
-            runtimeDetails.put("status", "new");
             log.info(
                     "Adding a new remote environment to the registry that can handle "
                             + runtimeEngine
                             + " and is located at "
-                            + runtimeAddress);
+                            + runtimeAddress
+                            + ". Runtimes for this engine: "
+                            + state().runtimes.getInstances(runtimeEngine.asText()).size());
             update = true;
         }
-        runtimes.put(runtimeEngine.asText(), runtimeDetails);
         String thisURL = req.getRequestURL().toString();
-        koArtifactsBaseUrl = StringUtils.substringBefore(thisURL, "/proxy/environments");
+        state().koArtifactsBaseUrl = StringUtils.substringBefore(thisURL, "/proxy/environments");
+        if (state().registrySnapshot != null) {
+            state().registrySnapshot.setArtifactsBaseUrl(state().koArtifactsBaseUrl);
+        }
         if (update) {
-            activationContext.refresh(runtimeEngine.asText());
+            runtimeDetails.put("refresh", state().refreshScheduler.request(runtimeEngine.asText()).toString());
         }
         log.debug("Runtime Registration is completed");
 
@@ -105,139 +138,632 @@ public class ProxyAdapter implements Adapter {
         return getRuntimes();
     }
 
+    /** Returns the details of the earliest registered runtime for the engine. */
     @GetMapping(value = "/environments/{engine}", produces = MediaType.APPLICATION_JSON_VALUE)
     public ObjectNode getRuntimeDetails(@PathVariable String engine) {
         log.info(String.format("Returning info on the %s engine.", engine));
-        return runtimes.get(engine);
+        RuntimeDescriptor runtime = state().runtimes.get(engine);
+        return runtime == null ? null : toJson(runtime);
+    }
+
+    /**
+     * Records a heartbeat from a runtime. When several runtimes serve the engine the heartbeat must
+     * say which one it is from with its {@code url}.
+     */
+    @PostMapping(
+            value = "/environments/{engine}/heartbeat",
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JsonNode> heartbeat(
+            @PathVariable String engine, @RequestBody(required = false) ObjectNode heartbeatDetails) {
+        List<RuntimeDescriptor> instances = state().runtimes.getInstances(engine);
+        String url = heartbeatDetails == null ? "" : heartbeatDetails.path("url").asText();
+        RuntimeDescriptor runtime = null;
+        if (!url.isEmpty()) {
+            runtime = state().runtimes.getInstance(RuntimeDescriptor.id(engine, url));
+        } else if (instances.size() == 1) {
+            runtime = instances.get(0);
+        } else if (instances.size() > 1) {
+            ObjectNode error = RuntimeResultExtractor.OBJECT_MAPPER.createObjectNode();
+            error.put("engine", engine);
+            error.put("status", "Several runtimes are registered for this engine, the heartbeat must include the runtime url");
+            return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+        }
+        if (runtime == null || state().healthMonitor == null) {
+            ObjectNode error = RuntimeResultExtractor.OBJECT_MAPPER.createObjectNode();
+            error.put("engine", engine);
+            error.put("status", "Not registered: No runtime is registered for this engine");
+            return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
+        }
+        state().healthMonitor.heartbeat(runtime.getId(), heartbeatDetails);
+        log.debug("Heartbeat received from the " + engine + " runtime at " + runtime.getUrl());
+        return new ResponseEntity<>(state().runtimes.getInstance(runtime.getId()).toJson(), HttpStatus.OK);
+    }
+
+    /**
+     * Removes a runtime from the registry, for example when it shuts down. When several runtimes
+     * serve the engine the runtime to remove must be given by its {@code url}.
+     */
+    @DeleteMapping(value = "/environments/{engine}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<JsonNode> deregisterRemoteRuntime(
+            @PathVariable String engine, @RequestParam(required = false) String url) {
+        List<RuntimeDescriptor> instances = state().runtimes.getInstances(engine);
+        RuntimeDescriptor runtime = null;
+        if (!StringUtils.isBlank(url)) {
+            runtime = state().runtimes.getInstance(RuntimeDescriptor.id(engine, url));
+        } else if (instances.size() == 1) {
+            runtime = instances.get(0);
+        } else if (instances.size() > 1) {
+            ObjectNode error = RuntimeResultExtractor.OBJECT_MAPPER.createObjectNode();
+            error.put("engine", engine);
+            error.put("status", "Several runtimes are registered for this engine, the url of the one to remove must be given");
+            return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+        }
+        RuntimeDescriptor removed = runtime == null ? null : state().runtimes.remove(runtime.getId());
+        if (removed == null) {
+            ObjectNode error = RuntimeResultExtractor.OBJECT_MAPPER.createObjectNode();
+            error.put("engine", engine);
+            error.put("status", "Not registered: No runtime is registered for this engine");
+            return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
+        }
+        log.info("Removed the " + engine + " runtime at " + removed.getUrl() + " from the registry");
+        ObjectNode removedJson = removed.toJson();
+        removedJson.put("status", "removed");
+        return new ResponseEntity<>(removedJson, HttpStatus.OK);
     }
 
     @GetMapping(value = "/artifacts/**")
-    public InputStreamResource getCodeArtifact(HttpServletRequest request) {
+    public void getCodeArtifact(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
         String requestURI = request.getRequestURI();
         URI path = URI.create(StringUtils.substringAfter(requestURI, "proxy/artifacts/"));
-        return new InputStreamResource(activationContext.getBinary(path));
+        state().artifactResponder.respond(state().activationContext, state().artifactCache, path, request, response);
     }
 
     @Override
     public List<String> getEngines() {
-        return new ArrayList<>(runtimes.keySet());
+        return state().runtimes.getEngines();
     }
 
     @Override
     public void initialize(ActivationContext context) {
-        activationContext = context;
+        state().activationContext = context;
+        if (state().healthMonitor != null) {
+            state().runtimes.removeListener(state().healthMonitor);
+            state().healthMonitor.shutdown();
+        }
+        state().healthMonitor = new RuntimeHealthMonitor(
+                restTemplate,
+                state().runtimes,
+                Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.health.interval", 30000)),
+                Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.health.max-backoff", 300000)),
+                getLongProperty("kgrid.adapter.proxy.health.jitter-percent", 20) / 100.0,
+                Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.health.heartbeat-timeout", 0)),
+                Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.health.evict-after", 600000)));
+        state().statusMaxAge = Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.status.max-age", 5000));
+        state().statusDeadline = Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.status.deadline", 2000));
+        String requestEncodings = state().activationContext == null
+                ? null : state().activationContext.getProperty("kgrid.adapter.proxy.compression.request-encodings");
+        state().compression = Compression.parse(
+                StringUtils.isBlank(requestEncodings) ? "gzip,deflate" : requestEncodings,
+                (int) getLongProperty("kgrid.adapter.proxy.compression.min-size", 1024));
+        String formats = state().activationContext == null
+                ? null : state().activationContext.getProperty("kgrid.adapter.proxy.formats");
+        state().wireFormats = WireFormat.parse(StringUtils.isBlank(formats) ? "cbor,smile" : formats);
+        state().artifactCache = new ArtifactCache(
+                getLongProperty("kgrid.adapter.proxy.artifact-cache.max-bytes", 64L * 1024 * 1024),
+                getBooleanProperty("kgrid.adapter.proxy.artifact-cache.off-heap", false),
+                getBooleanProperty("kgrid.adapter.proxy.compression.artifacts", true)
+                        ? state().compression.getMinSize() : -1);
+        state().activationParallelism = (int) getLongProperty("kgrid.adapter.proxy.activation.parallelism", 8);
+        state().incrementalActivation = getBooleanProperty("kgrid.adapter.proxy.activation.incremental", true);
+        state().dispatchStrategy = DispatchStrategy.named(state().activationContext == null
+                ? null : state().activationContext.getProperty("kgrid.adapter.proxy.dispatch"));
+        state().circuitBreakerConfig = new CircuitBreaker.Config(
+                getLongProperty("kgrid.adapter.proxy.circuit.failure-rate", 50),
+                getLongProperty("kgrid.adapter.proxy.circuit.slow-call-rate", 100),
+                Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.circuit.slow-call-duration", 10000)),
+                (int) getLongProperty("kgrid.adapter.proxy.circuit.window", 20),
+                (int) getLongProperty("kgrid.adapter.proxy.circuit.minimum-calls", 10),
+                Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.circuit.open-duration", 30000)),
+                (int) getLongProperty("kgrid.adapter.proxy.circuit.half-open-calls", 3));
+        state().bulkheadMaxConcurrentCalls = (int) getLongProperty("kgrid.adapter.proxy.bulkhead.max-concurrent", 50);
+        state().retryBudget = new RetryBudget(
+                getLongProperty("kgrid.adapter.proxy.retry-budget.percent", 10) / 100.0,
+                (int) getLongProperty("kgrid.adapter.proxy.retry-budget.burst", 20));
+        state().metrics = new ProxyMetrics(meterRegistry != null ? meterRegistry : Metrics.globalRegistry);
+        state().http2Transport = getBooleanProperty("kgrid.adapter.proxy.http2.enabled", true)
+                ? new Http2Transport(
+                        Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.http.connect-timeout", 5000)),
+                        Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.http.read-timeout", 60000)))
+                : null;
+        if (state().executionPool != null) {
+            state().executionPool.shutdown();
+            state().executionPool = null;
+        }
+        if ("pool".equalsIgnoreCase(state().activationContext == null
+                ? null : state().activationContext.getProperty("kgrid.adapter.proxy.execution.mode"))) {
+            state().executionPool = new ExecutionPool(
+                    (int) getLongProperty("kgrid.adapter.proxy.execution.max-concurrent", 200),
+                    (int) getLongProperty("kgrid.adapter.proxy.execution.max-queued", 100),
+                    getBooleanProperty("kgrid.adapter.proxy.execution.virtual-threads", true));
+            log.info("Asynchronous requests to runtimes run on "
+                    + (state().executionPool.isVirtual() ? "virtual threads" : "a pool of platform threads"));
+        }
+        if (state().attemptPool != null) {
+            state().attemptPool.shutdown();
+        }
+        state().attemptPool = RequestPolicy.attemptPool(
+                (int) getLongProperty("kgrid.adapter.proxy.attempts.max-concurrent", 64),
+                (int) getLongProperty("kgrid.adapter.proxy.attempts.max-queued", 64));
+        if (state().refreshScheduler != null) {
+            state().refreshScheduler.shutdown();
+        }
+        ActivationContext refreshContext = state().activationContext;
+        state().refreshScheduler = new RefreshScheduler(
+                engine -> refreshContext.refresh(engine),
+                Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.refresh.debounce", 2000)));
+        state().circuitBreakers.clear();
+        state().bulkheads.clear();
+        state().endpointActivations.clear();
+        state().activationPermits.clear();
+        List<String> restored = restoreRegistry();
+        state().runtimes.addListener(state().healthMonitor);
+        state().runtimes.getIds().forEach(state().healthMonitor::watch);
+        restored.forEach(state().healthMonitor::checkAsync);
+    }
+
+    /**
+     * Registers the runtimes saved in the registry snapshot, if one is configured, so endpoints can
+     * be activated on them before they register again, and keeps the snapshot up to date from then
+     * on. The restored runtimes are checked in the background rather than trusted.
+     */
+    private List<String> restoreRegistry() {
+        if (state().registrySnapshot != null) {
+            state().runtimes.removeListener(state().registrySnapshot);
+            state().registrySnapshot.shutdown();
+            state().registrySnapshot = null;
+        }
+        String registryFile = state().activationContext == null
+                ? null : state().activationContext.getProperty("kgrid.adapter.proxy.registry.file");
+        if (StringUtils.isBlank(registryFile)) {
+            return List.of();
+        }
+        state().registrySnapshot = new RegistrySnapshot(
+                Paths.get(registryFile.trim()),
+                state().runtimes,
+                Duration.ofMillis(getLongProperty("kgrid.adapter.proxy.registry.write-delay", 1000)));
+        List<String> restored = state().registrySnapshot.restore();
+        state().restoredRuntimes.addAll(restored);
+        if (state().koArtifactsBaseUrl == null) {
+            state().koArtifactsBaseUrl = state().registrySnapshot.getArtifactsBaseUrl();
+        } else {
+            state().registrySnapshot.setArtifactsBaseUrl(state().koArtifactsBaseUrl);
+        }
+        state().runtimes.addListener(state().registrySnapshot);
+        return restored;
     }
 
     @Override
     public Executor activate(URI absoluteLocation, URI endpointURI, JsonNode deploymentSpec) {
         String engine = deploymentSpec.at("/engine").asText();
-        if (!isRemoteUp(engine)) {
+        return activateOnRuntimes(upRuntimes(engine), absoluteLocation, endpointURI, deploymentSpec);
+    }
+
+    /**
+     * Activates the endpoints of each engine concurrently, checking each engine's runtimes once
+     * instead of once per endpoint. At most {@code kgrid.adapter.proxy.activation.parallelism}
+     * activations are sent to a runtime at a time, counting those of other calls, and each engine
+     * takes no more threads than that from the shared activation pool.
+     */
+    @Override
+    public List<ActivationResult> activateAll(List<ActivationRequest> requests) {
+        Map<String, List<Integer>> requestsByEngine = new LinkedHashMap<>();
+        for (int i = 0; i < requests.size(); i++) {
+            String engine = requests.get(i).getDeploymentSpec().at("/engine").asText();
+            requestsByEngine.computeIfAbsent(engine, key -> new ArrayList<>()).add(i);
+        }
+        ActivationResult[] results = new ActivationResult[requests.size()];
+        List<CompletableFuture<Void>> activations = new ArrayList<>();
+        for (Map.Entry<String, List<Integer>> engineRequests : requestsByEngine.entrySet()) {
+            String engine = engineRequests.getKey();
+            List<Integer> indexes = engineRequests.getValue();
+            long start = System.nanoTime();
+            List<RuntimeDescriptor> instances;
+            try {
+                instances = upRuntimes(engine);
+            } catch (RuntimeException e) {
+                Duration checkTime = Duration.ofNanos(System.nanoTime() - start);
+                indexes.forEach(i -> results[i] = ActivationResult.failed(requests.get(i), e, checkTime));
+                continue;
+            }
+            Queue<Integer> pending = new ConcurrentLinkedQueue<>(indexes);
+            int workers = Math.max(Math.min(indexes.size(), state().activationParallelism), 1);
+            for (int worker = 0; worker < workers; worker++) {
+                activations.add(CompletableFuture.runAsync(
+                        () -> {
+                            Integer i;
+                            while ((i = pending.poll()) != null) {
+                                results[i] = activateTimed(instances, requests.get(i));
+                            }
+                        },
+                        state().activationExecutor));
+            }
+        }
+        CompletableFuture.allOf(activations.toArray(new CompletableFuture<?>[0])).join();
+        return Arrays.asList(results);
+    }
+
+    private ActivationResult activateTimed(List<RuntimeDescriptor> instances, ActivationRequest request) {
+        long start = System.nanoTime();
+        try {
+            Executor executor = activateOnRuntimes(
+                    instances, request.getAbsoluteLocation(), request.getEndpointURI(), request.getDeploymentSpec());
+            return ActivationResult.activated(request, executor, Duration.ofNanos(System.nanoTime() - start));
+        } catch (RuntimeException e) {
+            return ActivationResult.failed(request, e, Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Wraps the executor in a result cache if its deployment spec asks for one, replacing (and
+     * emptying) the cache from any earlier activation of the endpoint. An endpoint that keeps its
+     * executor because neither it nor its runtimes changed isn't memoized again, so it keeps its
+     * cached results, which are still those of the same code on the same runtime processes.
+     */
+    private Executor memoize(Executor executor, URI endpointURI, JsonNode deploymentSpec) {
+        Executor activated = MemoizingExecutor.fromSpec(executor, deploymentSpec);
+        MemoizingExecutor previous = activated instanceof MemoizingExecutor
+                ? state().resultCaches.put(endpointURI, (MemoizingExecutor) activated)
+                : state().resultCaches.remove(endpointURI);
+        if (previous != null) {
+            previous.invalidate();
+        }
+        return activated;
+    }
+
+    /**
+     * Returns the runtimes registered for the engine that are up, using their cached health. Fails
+     * if there are none, with the status of the earliest registered one.
+     */
+    private List<RuntimeDescriptor> upRuntimes(String engine) {
+        List<RuntimeDescriptor> instances = state().runtimes.getInstances(engine);
+        List<RuntimeDescriptor> up = new ArrayList<>(instances.size());
+        String status = RuntimeHealthMonitor.NOT_REGISTERED;
+        for (int i = 0; i < instances.size(); i++) {
+            RuntimeHealth health = state().healthMonitor.getHealth(instances.get(i).getId());
+            if (health.isUp()) {
+                // Checking the runtime may have updated its details
+                RuntimeDescriptor current = state().runtimes.getInstance(instances.get(i).getId());
+                up.add(current != null ? current : instances.get(i));
+            } else if (i == 0) {
+                status = health.getStatus();
+            }
+        }
+        if (up.isEmpty()) {
             throw new AdapterServerErrorException(
                     String.format("Remote runtime %s is not online. Runtime status: %s.",
                             engine,
-                            runtimes.get(engine).get("status").asText()));
+                            status));
         }
-        String remoteServer = runtimes.get(engine).at("/url").asText();
+        return up;
+    }
 
-        try {
-            String proxyEndpoint = "proxy/artifacts";  // or /proxy/{naan}/{name}/**
-            ((ObjectNode) deploymentSpec)
-                    .put("baseUrl", String.format("%s/%s/%s", koArtifactsBaseUrl, proxyEndpoint, absoluteLocation));
+    /**
+     * Activates the endpoint on each of the runtimes, and returns an executor that dispatches
+     * requests among those where it activated. Fails only if it activated on none of them.
+     */
+    private Executor activateOnRuntimes(
+            List<RuntimeDescriptor> instances, URI absoluteLocation, URI endpointURI, JsonNode deploymentSpec) {
+        // The runtimes fetch the artifacts while activating, and the fingerprint hashes them, so both must see the current ones
+        state().artifactCache.invalidate(absoluteLocation);
+        String proxyEndpoint = "proxy/artifacts";  // or /proxy/{naan}/{name}/**
+        ((ObjectNode) deploymentSpec)
+                .put("baseUrl", String.format("%s/%s/%s", state().koArtifactsBaseUrl, proxyEndpoint, absoluteLocation));
+        ((ObjectNode) deploymentSpec).put("uri", endpointURI.toString());
 
-            ((ObjectNode) deploymentSpec).put("uri", endpointURI.toString());
+        String fingerprint = state().incrementalActivation ? fingerprint(absoluteLocation, deploymentSpec) : null;
+        EndpointActivation previous = fingerprint == null ? null : state().endpointActivations.get(endpointURI);
+        // Only what the runtimes report now shows whether they restarted and lost the endpoint
+        Map<String, String> currentInstanceIds = previous != null && previous.isUnchanged(fingerprint)
+                ? fetchInstanceIds(instances, previous)
+                : null;
+        if (currentInstanceIds != null && previous.isCurrent(instances, currentInstanceIds, fingerprint)) {
+            log.debug("Endpoint " + endpointURI + " is unchanged on all of its runtimes, keeping its executor");
+            return previous.getExecutor();
+        }
 
+        // Activate on all the runtimes at once, so an endpoint takes as long as its slowest runtime
+        Map<String, CompletableFuture<RuntimeTarget>> activations = new LinkedHashMap<>();
+        Map<String, String> currentIds = new HashMap<>();
+        for (RuntimeDescriptor runtime : instances) {
+            String instanceId = currentInstanceIds != null && previous.hasInstanceId(runtime.getId())
+                    ? currentInstanceIds.get(runtime.getId())
+                    : runtime.getInstanceId();
+            if (instanceId != null) {
+                currentIds.put(runtime.getId(), instanceId);
+            }
+            RuntimeTarget target = currentInstanceIds == null
+                    ? null
+                    : previous.reusableTarget(runtime.getId(), instanceId, fingerprint);
+            activations.put(runtime.getId(), target != null
+                    ? CompletableFuture.completedFuture(target)
+                    : CompletableFuture.supplyAsync(
+                            () -> activateOnRuntime(runtime, endpointURI, deploymentSpec),
+                            state().activationExecutor));
+        }
+
+        Map<String, RuntimeTarget> activated = new LinkedHashMap<>();
+        Map<String, String> instanceIds = new LinkedHashMap<>();
+        AdapterException firstFailure = null;
+        for (Map.Entry<String, CompletableFuture<RuntimeTarget>> activation : activations.entrySet()) {
+            String runtimeId = activation.getKey();
+            try {
+                activated.put(runtimeId, activation.getValue().join());
+                if (currentIds.containsKey(runtimeId)) {
+                    instanceIds.put(runtimeId, currentIds.get(runtimeId));
+                }
+            } catch (CompletionException e) {
+                if (!(e.getCause() instanceof AdapterException)) {
+                    throw e;
+                }
+                log.warn("Could not activate " + endpointURI + " on runtime " + runtimeId + ": "
+                        + e.getCause().getMessage());
+                if (firstFailure == null) {
+                    firstFailure = (AdapterException) e.getCause();
+                }
+            }
+        }
+        if (activated.isEmpty()) {
+            state().endpointActivations.remove(endpointURI);
+            throw firstFailure;
+        }
+        List<RuntimeTarget> targets = new ArrayList<>(activated.values());
+        Executor executor = new ProxyExecutor(
+                restTemplate,
+                webClient,
+                state().executionPool,
+                state().http2Transport,
+                state().compression,
+                state().wireFormats,
+                resultExtractor,
+                state().runtimes,
+                state().dispatchStrategy,
+                targets,
+                RequestPolicy.fromSpec(deploymentSpec, state().attemptPool),
+                state().retryBudget,
+                state().metrics.forEndpoint(endpointURI));
+        Executor memoized = memoize(executor, endpointURI, deploymentSpec);
+        if (fingerprint != null) {
+            state().endpointActivations.put(
+                    endpointURI, new EndpointActivation(fingerprint, instanceIds, activated, memoized));
+        } else {
+            state().endpointActivations.remove(endpointURI);
+        }
+        return memoized;
+    }
+
+    /**
+     * Asks each runtime that could still hold the endpoint for its instance id now, leaving out
+     * those that don't answer or report one. Runtimes that had no id when the endpoint was activated
+     * on them are activated again anyway, so they aren't asked.
+     */
+    private Map<String, String> fetchInstanceIds(List<RuntimeDescriptor> instances, EndpointActivation previous) {
+        Map<String, String> instanceIds = new HashMap<>();
+        for (RuntimeDescriptor runtime : instances) {
+            String instanceId = previous.hasInstanceId(runtime.getId())
+                    ? state().healthMonitor.fetchInstanceId(runtime)
+                    : null;
+            if (instanceId != null) {
+                instanceIds.put(runtime.getId(), instanceId);
+            }
+        }
+        return instanceIds;
+    }
+
+    /**
+     * Hashes the deployment spec together with the current ETag of each of its artifacts, or
+     * returns null if an artifact can't be read, in which case the endpoint is activated again.
+     */
+    private String fingerprint(URI absoluteLocation, JsonNode deploymentSpec) {
+        StringBuilder fingerprint = new StringBuilder(deploymentSpec.toString());
+        JsonNode artifacts = deploymentSpec.path("artifact");
+        List<String> paths = new ArrayList<>();
+        if (artifacts.isArray()) {
+            artifacts.forEach(artifact -> paths.add(artifact.asText()));
+        } else if (artifacts.isTextual()) {
+            paths.add(artifacts.asText());
+        }
+        String location = StringUtils.removeEnd(absoluteLocation.toString(), "/");
+        try {
+            for (String path : paths) {
+                URI artifact = URI.create(location + "/" + StringUtils.removeStart(path, "/"));
+                String etag = state().artifactResponder.currentEtag(
+                        state().activationContext, state().artifactCache, artifact);
+                if (etag == null) {
+                    return null;
+                }
+                fingerprint.append('\n').append(path).append(' ').append(etag);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.debug("Could not fingerprint the artifacts of " + absoluteLocation + ": " + e.getMessage());
+            return null;
+        }
+        return DigestUtils.md5DigestAsHex(fingerprint.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private RuntimeTarget activateOnRuntime(RuntimeDescriptor runtime, URI endpointURI, JsonNode deploymentSpec) {
+        String remoteServer = runtime.getUrl();
+        Semaphore permits = state().activationPermits.computeIfAbsent(
+                runtime.getId(), id -> new Semaphore(Math.max(state().activationParallelism, 1)));
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AdapterException("Interrupted while waiting to activate on runtime " + runtime.getId(), e);
+        }
+        long startTime = System.nanoTime();
+        AdapterException failure = null;
+        try {
             HttpHeaders headers = new HttpHeaders();
             headers.add("Content-Type", "application/json");
             HttpEntity<JsonNode> activationReq = new HttpEntity<>(deploymentSpec, headers);
-            long startTime = System.currentTimeMillis();
-            JsonNode activationResult =
-                    restTemplate.postForObject(remoteServer + "/endpoints", activationReq, JsonNode.class);
-            long endTime = System.currentTimeMillis();
+            JsonNode activationResult;
+            try {
+                activationResult =
+                        restTemplate.postForObject(remoteServer + "/endpoints", activationReq, JsonNode.class);
+            } finally {
+                permits.release();
+            }
             URL remoteServerUrl =
                     (null == activationResult.get("baseUrl"))
                             ? new URL(remoteServer)
                             : new URL(activationResult.get("baseUrl").asText());
             URL remoteEndpoint = new URL(remoteServerUrl, activationResult.get("uri").asText());
 
-            long time = endTime - startTime;
             log.debug(
                     "Activation result: "
                             + activationResult
                             + " time: "
-                            + time
+                            + Duration.ofNanos(System.nanoTime() - startTime).toMillis()
                             + " milliseconds.");
 
-            return new Executor() {
-                @Override
-                public Object execute(Object input, String contentType) {
-                    try {
-                        headers.setContentType(MediaType.valueOf(contentType));
-                        HttpEntity<Object> executionReq = new HttpEntity<>(input, headers);
-                        String runtimeResult = restTemplate.postForObject(
-                                remoteEndpoint.toString(), executionReq, String.class);
-                        try {
-                            JsonNode resultJson = new ObjectMapper().readTree(runtimeResult);
-                            if (resultJson.has("result")) {
-                                return resultJson.get("result");
-                            }
-                            return resultJson;
-                        } catch (Exception e) {
-                            log.error(e.getMessage());
-                        }
-                        return runtimeResult;
-                    } catch (HttpClientErrorException e) {
-                        throw new AdapterClientErrorException(e.getMessage(), e);
-                    } catch (HttpServerErrorException e) {
-                        throw new AdapterServerErrorException(e.getMessage(), e);
-                    } catch (Exception e) {
-                        throw new AdapterException(e.getMessage(), e);
-                    }
-                }
-            };
+            RuntimeLoad load = state().runtimeLoads.computeIfAbsent(runtime.getId(), id -> new RuntimeLoad());
+            state().metrics.registerInFlight(runtime, load);
+            return new RuntimeTarget(
+                    runtime.getEngine(),
+                    runtime.getUrl(),
+                    remoteEndpoint,
+                    load,
+                    state().circuitBreakers.computeIfAbsent(
+                            runtime.getId(), id -> new CircuitBreaker(state().circuitBreakerConfig)),
+                    state().bulkheads.computeIfAbsent(
+                            runtime.getId(), id -> new Bulkhead(state().bulkheadMaxConcurrentCalls)));
         } catch (HttpClientErrorException e) {
-            throw new AdapterClientErrorException(e.getMessage(), e);
+            failure = new AdapterClientErrorException(e.getMessage(), e);
+            throw failure;
         } catch (HttpServerErrorException e) {
-            throw new AdapterServerErrorException(e.getMessage(), e);
+            failure = new AdapterServerErrorException(e.getMessage(), e);
+            throw failure;
         } catch (Exception e) {
-            throw new AdapterException(e.getMessage(), e);
+            failure = new AdapterException(e.getMessage(), e);
+            throw failure;
+        } finally {
+            state().metrics.recordActivation(runtime, endpointURI, System.nanoTime() - startTime, failure);
         }
     }
 
     @Override
     public String status() {
-        if (activationContext != null) {
+        if (state().activationContext != null) {
             return "up";
         } else {
             return "down";
         }
     }
 
+    /**
+     * Returns the status of every runtime, first probing those not checked recently. The probes run
+     * in parallel and runtimes that haven't answered by the status deadline are reported with their
+     * last known status.
+     */
     public ArrayNode getRuntimes() {
-        ArrayNode runtimeList = new ObjectMapper().createArrayNode();
-        runtimes.forEach(
-                (engine, runtimeDetails) -> {
-                    runtimeList.add(updateRuntimeInfo(runtimeDetails));
-                });
+        return getRuntimes(state().statusDeadline);
+    }
+
+    /**
+     * Returns the last known status of every runtime without waiting on any of them. Out of date
+     * runtimes are probed in the background so the next call sees fresher data.
+     */
+    public ArrayNode getCachedRuntimes() {
+        return getRuntimes(Duration.ZERO);
+    }
+
+    private ArrayNode getRuntimes(Duration deadline) {
+        if (state().healthMonitor != null) {
+            state().healthMonitor.refresh(state().statusMaxAge, deadline);
+        }
+        ArrayNode runtimeList = RuntimeResultExtractor.OBJECT_MAPPER.createArrayNode();
+        state().runtimes.getAll().forEach(runtime -> runtimeList.add(toJson(runtime)));
         return runtimeList;
     }
 
-    private boolean isRemoteUp(String engine) {
-        ObjectNode runtimeDetails = runtimes.get(engine);
-        runtimes.put(engine, updateRuntimeInfo(runtimeDetails));
-        return runtimes.get(engine).get("status").asText().toLowerCase().equals("up");
+    /**
+     * Returns the runtime's details with the state of its circuit breaker and bulkhead. A runtime
+     * that is up but whose circuit is open is reported as unavailable.
+     */
+    private ObjectNode toJson(RuntimeDescriptor runtime) {
+        ObjectNode runtimeJson = runtime.toJson();
+        CircuitBreaker circuitBreaker = state().circuitBreakers.get(runtime.getId());
+        if (circuitBreaker != null) {
+            runtimeJson.set("circuit", RuntimeResultExtractor.OBJECT_MAPPER.valueToTree(circuitBreaker.getStats()));
+            if (runtime.isUp() && circuitBreaker.getState() == CircuitBreaker.State.OPEN) {
+                runtimeJson.put("status", "unavailable");
+            }
+        }
+        Bulkhead bulkhead = state().bulkheads.get(runtime.getId());
+        if (bulkhead != null) {
+            runtimeJson.set("bulkhead", RuntimeResultExtractor.OBJECT_MAPPER.valueToTree(bulkhead.getStats()));
+        }
+        return runtimeJson;
+    }
+
+    /** Returns each engine's refresh state and how long its last refresh took. */
+    public Map<String, Object> getRefreshStats() {
+        return state().refreshScheduler == null ? Map.of() : state().refreshScheduler.getStats();
     }
 
-    private ObjectNode updateRuntimeInfo(ObjectNode runtimeDetails) {
-        try {
-            ResponseEntity<JsonNode> response = restTemplate.getForEntity(runtimeDetails.at("/url").asText() + "/info", JsonNode.class);
-            if (response.getStatusCode().is2xxSuccessful()) {
-                runtimeDetails = (ObjectNode) response.getBody();
-            } else {
-                runtimeDetails.put("status", "Error while retrieving runtime status: " + response.getStatusCodeValue());
+    /** Returns the hit, miss and eviction counts and the size of the artifact cache. */
+    public Map<String, Object> getArtifactCacheStats() {
+        return state().artifactCache.getStats();
+    }
+
+    /** Returns the retries and hedges spent and refused, and those still available. */
+    public Map<String, Object> getRetryBudgetStats() {
+        return state().retryBudget.getStats();
+    }
+
+    /** Returns the execution pool's calls in progress, waiting and refused, or null without one. */
+    public Map<String, Object> getExecutionPoolStats() {
+        ExecutionPool pool = state().executionPool;
+        return pool == null ? null : pool.getStats();
+    }
+
+    /** Returns the hit, miss and eviction counts of each endpoint's result cache. */
+    public Map<String, Object> getResultCacheStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        state().resultCaches.forEach((endpoint, cache) -> stats.put(endpoint.toString(), cache.getStats()));
+        return stats;
+    }
+
+    /** Returns the state shared through Spring, or one of this adapter's own if it wasn't autowired. */
+    private ProxyState state() {
+        ProxyState current = state;
+        if (current == null) {
+            synchronized (this) {
+                if (state == null) {
+                    state = new ProxyState();
+                }
+                current = state;
             }
-        } catch (Exception e) {
-            runtimeDetails.put("status", "Activator could not connect to runtime");
         }
-        return runtimeDetails;
+        return current;
+    }
+
+    private boolean getBooleanProperty(String key, boolean defaultValue) {
+        String value = state().activationContext == null ? null : state().activationContext.getProperty(key);
+        return StringUtils.isBlank(value) ? defaultValue : Boolean.parseBoolean(value.trim());
+    }
+
+    private long getLongProperty(String key, long defaultValue) {
+        String value = state().activationContext == null ? null : state().activationContext.getProperty(key);
+        if (StringUtils.isBlank(value)) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            log.warn("Ignoring invalid value " + value + " for " + key + ", using " + defaultValue);
+            return defaultValue;
+        }
     }
 }
@@ -0,0 +1,699 @@
+package org.kgrid.adapter.proxy;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DeflaterOutputStream;
+import org.kgrid.adapter.api.AdapterClientErrorException;
+import org.kgrid.adapter.api.AdapterException;
+import org.kgrid.adapter.api.AdapterServerErrorException;
+import org.kgrid.adapter.api.ClientRequest;
+import org.kgrid.adapter.api.Executor;
+import org.kgrid.adapter.api.ExecutorResponse;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseErrorHandler;
+import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Executes requests for one endpoint activated in one or more instances of a remote runtime. Each
+ * request goes to an instance chosen by the {@link DispatchStrategy}, from those that are up, and
+ * fails fast if that instance's circuit breaker or bulkhead refuses it. Endpoints with a
+ * {@link RequestPolicy} retry and hedge single requests, preferring instances not yet tried.
+ * Requests with a streaming body are piped to the runtime and its response piped back, so neither
+ * is held in memory. Asynchronous requests run on the {@link ExecutionPool} when there is one, and
+ * otherwise through the non-blocking web client. Runtimes that advertise HTTP/2 are sent single
+ * and streaming requests over the {@link Http2Transport} instead. Request bodies are compressed
+ * for runtimes that accept it, as the {@link Compression} settings allow, and JSON is exchanged in
+ * a binary {@link WireFormat} with runtimes that read and write one.
+ */
+class ProxyExecutor implements Executor {
+
+    static final String BATCH_PATH = "/batch";
+
+    private final RestTemplate restTemplate;
+    private final ClientHttpRequestFactory streamingRequests;
+    private final WebClient webClient;
+    private final ExecutionPool executionPool;
+    private final Http2Transport http2;
+    private final Compression compression;
+    private final List<WireFormat> formats;
+    private final RuntimeResultExtractor resultExtractor;
+    private final RuntimeRegistry runtimes;
+    private final DispatchStrategy dispatch;
+    private final List<RuntimeTarget> targets;
+    private final RequestPolicy policy;
+    private final RetryBudget retryBudget;
+    private final ProxyMetrics.Endpoint metrics;
+    private final LatencyTracker latencies = new LatencyTracker();
+
+    /**
+     * @param executionPool where asynchronous requests run, or null to use the web client
+     * @param http2 how requests are sent to runtimes that accept HTTP/2, or null to use HTTP/1.1
+     * @param compression how request bodies are compressed, or null to send them as they are
+     * @param formats the binary formats runtimes may be spoken to in, in order of preference
+     * @param policy how requests are retried and hedged, or null to send each request once
+     * @param retryBudget the budget retries and hedges are taken from when there is a policy
+     * @param metrics where each request sent to a runtime is recorded
+     */
+    ProxyExecutor(
+            RestTemplate restTemplate,
+            WebClient webClient,
+            ExecutionPool executionPool,
+            Http2Transport http2,
+            Compression compression,
+            List<WireFormat> formats,
+            RuntimeResultExtractor resultExtractor,
+            RuntimeRegistry runtimes,
+            DispatchStrategy dispatch,
+            List<RuntimeTarget> targets,
+            RequestPolicy policy,
+            RetryBudget retryBudget,
+            ProxyMetrics.Endpoint metrics) {
+        this.restTemplate = restTemplate;
+        this.streamingRequests = streamingRequestFactory(restTemplate);
+        this.webClient = webClient;
+        this.executionPool = executionPool;
+        this.http2 = http2;
+        this.compression = compression;
+        this.formats = List.copyOf(formats);
+        this.resultExtractor = resultExtractor;
+        this.runtimes = runtimes;
+        this.dispatch = dispatch;
+        this.targets = List.copyOf(targets);
+        this.policy = policy;
+        this.retryBudget = retryBudget;
+        this.metrics = metrics;
+    }
+
+    /** Kept for activators that still call the deprecated method; does the same as {@link #execute(ClientRequest)}. */
+    @Deprecated
+    @Override
+    public Object execute(Object input, String contentType) {
+        return call(input, contentType);
+    }
+
+    private Object call(Object input, String contentType) {
+        if (policy == null) {
+            return send(chooseTarget(null), input, contentType);
+        }
+        Set<RuntimeTarget> tried = ConcurrentHashMap.newKeySet();
+        return policy.callBlocking(
+                () -> send(chooseTarget(tried), input, contentType), retryBudget, latencies);
+    }
+
+    /**
+     * Sends a request with a streaming body to the runtime as the body is read, and answers with the
+     * runtime's response as a stream instead of a result extracted from it. A stream can only be
+     * read once, so these requests are never retried or hedged.
+     */
+    @Override
+    public ExecutorResponse execute(ClientRequest request) {
+        if (!request.isStreaming()) {
+            return new ExecutorResponse(call(request.getBody(), contentTypeOrJson(request)), new HashMap<>(), request);
+        }
+        return stream(chooseTarget(null), request);
+    }
+
+    @Override
+    public CompletionStage<ExecutorResponse> executeAsync(ClientRequest request) {
+        if (executionPool != null) {
+            return executionPool.submit(() -> execute(request));
+        }
+        if (webClient == null || request.isStreaming()) {
+            return Executor.super.executeAsync(request);
+        }
+        if (policy == null) {
+            return sendAsync(chooseTarget(null), request);
+        }
+        Set<RuntimeTarget> tried = ConcurrentHashMap.newKeySet();
+        return policy.call(() -> sendAsync(chooseTarget(tried), request), retryBudget, latencies);
+    }
+
+    private Object send(RuntimeTarget target, Object input, String contentType) {
+        long start = target.acquire();
+        AdapterException failure = null;
+        AtomicLong requestBytes = new AtomicLong();
+        AtomicLong responseBytes = new AtomicLong();
+        try {
+            HttpEntity<Object> executionReq = runtimeRequest(target, input, contentType);
+            if (usesHttp2(target)) {
+                HttpHeaders headers = new HttpHeaders();
+                byte[] body = http2Body(target, executionReq, headers);
+                requestBytes.set(body.length);
+                HttpResponse<InputStream> response = http2.send(
+                        target.getEndpoint().toURI(), headers, HttpRequest.BodyPublishers.ofByteArray(body));
+                try (InputStream result = ProxyMetrics.counting(response.body(), responseBytes)) {
+                    return resultExtractor.extract(result, Http2Transport.contentType(response));
+                }
+            }
+            return restTemplate.execute(
+                    target.getEndpoint().toString(),
+                    HttpMethod.POST,
+                    ProxyMetrics.countingRequest(
+                            compressing(restTemplate.httpEntityCallback(executionReq, String.class),
+                                    requestEncoding(target)),
+                            requestBytes),
+                    response -> resultExtractor.extract(
+                            ProxyMetrics.countingResponse(response, responseBytes),
+                            response.getHeaders().getContentType()));
+        } catch (Exception e) {
+            failure = toAdapterException(e);
+            throw failure;
+        } finally {
+            target.release(start, failure);
+            metrics.recordExecution(
+                    target, System.nanoTime() - start, failure, requestBytes.get(), responseBytes.get());
+        }
+    }
+
+    private ExecutorResponse stream(RuntimeTarget target, ClientRequest request) {
+        long start = target.acquire();
+        AtomicLong requestBytes = new AtomicLong();
+        ClientHttpResponse response = null;
+        try {
+            URI endpoint = target.getEndpoint().toURI();
+            if (usesHttp2(target)) {
+                return streamHttp2(target, start, endpoint, request, requestBytes);
+            }
+            ClientHttpRequest runtimeRequest = streamingRequests.createRequest(endpoint, HttpMethod.POST);
+            String contentType = contentType(request);
+            runtimeRequest.getHeaders().setContentType(contentType == null
+                    ? MediaType.APPLICATION_OCTET_STREAM : MediaType.valueOf(contentType));
+            InputStream input = request.getBodyStream();
+            String encoding = requestEncoding(target);
+            if (encoding != null) {
+                runtimeRequest.getHeaders().set(HttpHeaders.CONTENT_ENCODING, encoding);
+            }
+            if (runtimeRequest instanceof StreamingHttpOutputMessage) {
+                ((StreamingHttpOutputMessage) runtimeRequest)
+                        .setBody(body -> requestBytes.set(transfer(input, body, encoding)));
+            } else {
+                requestBytes.set(transfer(input, runtimeRequest.getBody(), encoding));
+            }
+            response = runtimeRequest.execute();
+            ResponseErrorHandler errorHandler = restTemplate.getErrorHandler();
+            if (errorHandler.hasError(response)) {
+                errorHandler.handleError(endpoint, HttpMethod.POST, response);
+            }
+            Map<String, List<String>> headers = new HashMap<>();
+            copyHeader(response.getHeaders(), HttpHeaders.CONTENT_TYPE, headers);
+            copyHeader(response.getHeaders(), HttpHeaders.CONTENT_LENGTH, headers);
+            return new ExecutorResponse(
+                    new RuntimeResponseStream(target, start, response.getBody(), response, requestBytes.get()),
+                    headers, request);
+        } catch (Exception e) {
+            AdapterException failure = toAdapterException(e);
+            if (response != null) {
+                response.close();
+            }
+            target.release(start, failure);
+            metrics.recordExecution(target, System.nanoTime() - start, failure, requestBytes.get(), 0);
+            throw failure;
+        }
+    }
+
+    private ExecutorResponse streamHttp2(
+            RuntimeTarget target, long start, URI endpoint, ClientRequest request, AtomicLong requestBytes)
+            throws IOException {
+        String contentType = contentType(request);
+        InputStream input = ProxyMetrics.counting(request.getBodyStream(), requestBytes);
+        HttpHeaders requestHeaders = new HttpHeaders();
+        requestHeaders.setContentType(contentType == null
+                ? MediaType.APPLICATION_OCTET_STREAM : MediaType.valueOf(contentType));
+        HttpResponse<InputStream> response = http2.send(
+                endpoint, requestHeaders, HttpRequest.BodyPublishers.ofInputStream(() -> input));
+        Map<String, List<String>> headers = new HashMap<>();
+        response.headers().firstValue(HttpHeaders.CONTENT_TYPE)
+                .ifPresent(value -> headers.put("content-type", List.of(value)));
+        if (response.headers().firstValue(HttpHeaders.CONTENT_ENCODING).isEmpty()) {
+            // a decompressed body's length isn't known
+            response.headers().firstValue(HttpHeaders.CONTENT_LENGTH)
+                    .ifPresent(value -> headers.put("content-length", List.of(value)));
+        }
+        return new ExecutorResponse(
+                new RuntimeResponseStream(target, start, response.body(), response.body(), requestBytes.get()),
+                headers, request);
+    }
+
+    private CompletableFuture<ExecutorResponse> sendAsync(RuntimeTarget target, ClientRequest request) {
+        if (usesHttp2(target)) {
+            return sendAsyncHttp2(target, request);
+        }
+        WebClient.RequestBodySpec executionReq = webClient.post().uri(target.getEndpoint().toString());
+        try {
+            HttpEntity<Object> runtimeRequest = runtimeRequest(target, request.getBody(), contentTypeOrJson(request));
+            executionReq.headers(headers -> headers.addAll(runtimeRequest.getHeaders()));
+            if (runtimeRequest.getBody() != null) {
+                byte[] compressed = compressBody(target, runtimeRequest.getBody());
+                if (compressed != null) {
+                    executionReq.header(HttpHeaders.CONTENT_ENCODING, requestEncoding(target));
+                    executionReq.bodyValue(compressed);
+                } else {
+                    executionReq.bodyValue(runtimeRequest.getBody());
+                }
+            }
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(toAdapterException(e));
+        }
+        long start;
+        try {
+            start = target.acquire();
+        } catch (AdapterException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        AtomicLong responseBytes = new AtomicLong();
+        return executionReq
+                .retrieve()
+                .toEntity(DataBuffer.class)
+                .filter(runtimeResult -> runtimeResult.getBody() != null)
+                .doOnNext(runtimeResult -> responseBytes.set(runtimeResult.getBody().readableByteCount()))
+                .map(runtimeResult -> new ExecutorResponse(
+                        extractResult(runtimeResult.getBody(), runtimeResult.getHeaders().getContentType()),
+                        new HashMap<>(), request))
+                .switchIfEmpty(Mono.fromSupplier(() ->
+                        new ExecutorResponse(null, new HashMap<>(), request)))
+                .onErrorMap(ProxyExecutor::toAdapterException)
+                .doOnError(failure::set)
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        // The caller gave up on it, for example a hedged request that lost
+                        target.cancel(start);
+                        return;
+                    }
+                    target.release(start, failure.get());
+                    metrics.recordExecution(
+                            target, System.nanoTime() - start, failure.get(), -1, responseBytes.get());
+                })
+                .toFuture();
+    }
+
+    private CompletableFuture<ExecutorResponse> sendAsyncHttp2(RuntimeTarget target, ClientRequest request) {
+        HttpHeaders headers = new HttpHeaders();
+        byte[] body;
+        URI endpoint;
+        try {
+            body = http2Body(target, runtimeRequest(target, request.getBody(), contentTypeOrJson(request)), headers);
+            endpoint = target.getEndpoint().toURI();
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(toAdapterException(e));
+        }
+        long start;
+        try {
+            start = target.acquire();
+        } catch (AdapterException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<HttpResponse<byte[]>> sent = http2.sendAsync(endpoint, headers, body);
+        CompletableFuture<ExecutorResponse> executed = sent
+                .handle((response, error) -> {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    if (cause instanceof CancellationException) {
+                        target.cancel(start);
+                        throw (CancellationException) cause;
+                    }
+                    AdapterException failure = null;
+                    try {
+                        if (cause != null) {
+                            throw cause;
+                        }
+                        try (InputStream result = new ByteArrayInputStream(response.body())) {
+                            return new ExecutorResponse(
+                                    resultExtractor.extract(result, Http2Transport.contentType(response)),
+                                    new HashMap<>(), request);
+                        }
+                    } catch (Throwable e) {
+                        failure = toAdapterException(e);
+                        throw failure;
+                    } finally {
+                        target.release(start, failure);
+                        metrics.recordExecution(target, System.nanoTime() - start, failure, body.length,
+                                response == null ? 0 : response.body().length);
+                    }
+                });
+        // Cancelling the result cancels the exchange, which releases the target as cancelled
+        executed.whenComplete((response, error) -> {
+            if (executed.isCancelled()) {
+                sent.cancel(true);
+            }
+        });
+        return executed;
+    }
+
+    /**
+     * Sends JSON requests to runtimes that advertise {@code "batch": true} in their details as one
+     * POST of an array of inputs to {@code {endpoint}/batch}, in chunks of at most the runtime's
+     * {@code maxBatchSize}. Each chunk is dispatched separately. Anything else runs one request
+     * at a time.
+     */
+    @Override
+    public List<ExecutorResponse> executeBatch(List<ClientRequest> requests) {
+        if (requests.size() < 2 || !requests.stream().allMatch(this::isJson)) {
+            return Executor.super.executeBatch(requests);
+        }
+        List<ExecutorResponse> responses = new ArrayList<>(requests.size());
+        int start = 0;
+        while (start < requests.size()) {
+            RuntimeTarget target = chooseTarget(null);
+            RuntimeDescriptor runtime = runtimes.getInstance(target.getRuntimeId());
+            if (runtime == null || !runtime.supportsBatch()) {
+                responses.addAll(Executor.super.executeBatch(requests.subList(start, requests.size())));
+                break;
+            }
+            int chunkSize = runtime.getMaxBatchSize() > 0 ? runtime.getMaxBatchSize() : requests.size();
+            List<ClientRequest> chunk =
+                    requests.subList(start, Math.min(start + chunkSize, requests.size()));
+            List<Object> results = executeChunk(target, chunk);
+            for (int i = 0; i < chunk.size(); i++) {
+                responses.add(new ExecutorResponse(results.get(i), new HashMap<>(), chunk.get(i)));
+            }
+            start += chunk.size();
+        }
+        return responses;
+    }
+
+    /**
+     * Chooses among the targets that are up and whose circuit isn't open, then those whose circuit
+     * isn't open. If every circuit is open the chosen target refuses the request. Targets already
+     * tried for this request are left out while there are others, and the chosen one is added.
+     */
+    private RuntimeTarget chooseTarget(Set<RuntimeTarget> tried) {
+        if (targets.size() == 1) {
+            return targets.get(0);
+        }
+        List<RuntimeTarget> candidates = targets;
+        if (tried != null && tried.size() < targets.size()) {
+            candidates = new ArrayList<>(targets);
+            candidates.removeAll(tried);
+        }
+        RuntimeTarget target = chooseAmong(candidates);
+        if (tried != null) {
+            tried.add(target);
+        }
+        return target;
+    }
+
+    private boolean usesHttp2(RuntimeTarget target) {
+        if (http2 == null) {
+            return false;
+        }
+        RuntimeDescriptor runtime = runtimes.getInstance(target.getRuntimeId());
+        return runtime != null && runtime.supportsHttp2();
+    }
+
+    /** The binary format the target's runtime prefers, or null to send it JSON. */
+    private WireFormat format(RuntimeTarget target) {
+        if (formats.isEmpty()) {
+            return null;
+        }
+        RuntimeDescriptor runtime = runtimes.getInstance(target.getRuntimeId());
+        if (runtime == null) {
+            return null;
+        }
+        for (WireFormat format : formats) {
+            if (runtime.acceptsFormat(format.getName())) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The body and headers a request is sent to the target with. Runtimes with a binary format are
+     * asked to answer in it, and sent JSON bodies in it when they haven't been serialized already.
+     */
+    private HttpEntity<Object> runtimeRequest(RuntimeTarget target, Object input, String contentType)
+            throws IOException {
+        HttpHeaders headers = new HttpHeaders();
+        WireFormat format = format(target);
+        if (format != null) {
+            headers.set(HttpHeaders.ACCEPT, format.getAccept());
+            if (WireFormat.canConvert(input, contentType)) {
+                headers.setContentType(format.getMediaType());
+                return new HttpEntity<>(format.write(input), headers);
+            }
+        }
+        headers.setContentType(MediaType.valueOf(contentType));
+        return new HttpEntity<>(input, headers);
+    }
+
+    /** Serializes the request for the HTTP/2 transport, compressed if worth it, copying its headers to match. */
+    private byte[] http2Body(RuntimeTarget target, HttpEntity<Object> runtimeRequest, HttpHeaders headers)
+            throws IOException {
+        headers.putAll(runtimeRequest.getHeaders());
+        byte[] body = Http2Transport.serialize(runtimeRequest.getBody());
+        byte[] compressed = compressBody(target, body);
+        if (compressed == null) {
+            return body;
+        }
+        headers.set(HttpHeaders.CONTENT_ENCODING, requestEncoding(target));
+        return compressed;
+    }
+
+    /** The encoding to compress request bodies for the target in, or null to send them as they are. */
+    private String requestEncoding(RuntimeTarget target) {
+        return compression == null ? null : compression.requestEncoding(runtimes.getInstance(target.getRuntimeId()));
+    }
+
+    private RequestCallback compressing(RequestCallback callback, String encoding) {
+        return compression == null ? callback : compression.compressing(callback, encoding);
+    }
+
+    /** The body serialized and compressed for the target, or null if it isn't to be compressed. */
+    private byte[] compressBody(RuntimeTarget target, Object body) throws IOException {
+        String encoding = requestEncoding(target);
+        return encoding == null ? null : compression.compress(Http2Transport.serialize(body), encoding);
+    }
+
+    /** Copies a streaming body, compressing it as it goes if there is an encoding. */
+    private static long transfer(InputStream input, OutputStream body, String encoding) throws IOException {
+        if (encoding == null) {
+            return input.transferTo(body);
+        }
+        AtomicLong written = new AtomicLong();
+        DeflaterOutputStream encoder = Compression.encoder(ProxyMetrics.counting(body, written), encoding);
+        input.transferTo(encoder);
+        encoder.finish();
+        return written.get();
+    }
+
+    private RuntimeTarget chooseAmong(List<RuntimeTarget> candidates) {
+        List<RuntimeTarget> up = new ArrayList<>(candidates.size());
+        List<RuntimeTarget> accepting = new ArrayList<>(candidates.size());
+        for (RuntimeTarget target : candidates) {
+            if (target.isRefusingCalls()) {
+                continue;
+            }
+            accepting.add(target);
+            RuntimeDescriptor runtime = runtimes.getInstance(target.getRuntimeId());
+            if (runtime != null && runtime.isUp()) {
+                up.add(target);
+            }
+        }
+        return dispatch.choose(!up.isEmpty() ? up : !accepting.isEmpty() ? accepting : candidates);
+    }
+
+    private List<Object> executeChunk(RuntimeTarget target, List<ClientRequest> chunk) {
+        List<Object> inputs = new ArrayList<>(chunk.size());
+        chunk.forEach(request -> inputs.add(request.getBody()));
+        List<Object> results;
+        long start = target.acquire();
+        AdapterException failure = null;
+        AtomicLong requestBytes = new AtomicLong();
+        AtomicLong responseBytes = new AtomicLong();
+        try {
+            HttpEntity<Object> batchReq = runtimeRequest(target, inputs, MediaType.APPLICATION_JSON_VALUE);
+            results = restTemplate.execute(
+                    target.getEndpoint() + BATCH_PATH,
+                    HttpMethod.POST,
+                    ProxyMetrics.countingRequest(
+                            compressing(restTemplate.httpEntityCallback(batchReq, String.class), requestEncoding(target)),
+                            requestBytes),
+                    response -> resultExtractor.extractBatch(
+                            ProxyMetrics.countingResponse(response, responseBytes),
+                            response.getHeaders().getContentType()));
+        } catch (Exception e) {
+            failure = toAdapterException(e);
+            throw failure;
+        } finally {
+            target.release(start, failure);
+            metrics.recordExecution(
+                    target, System.nanoTime() - start, failure, requestBytes.get(), responseBytes.get());
+        }
+        if (results == null || results.size() != chunk.size()) {
+            throw new AdapterServerErrorException(String.format(
+                    "Remote runtime %s returned %s results for a batch of %d requests",
+                    target.getRuntimeId(), results == null ? "no" : String.valueOf(results.size()), chunk.size()));
+        }
+        return results;
+    }
+
+    private boolean isJson(ClientRequest request) {
+        String contentType = contentType(request);
+        return !request.isStreaming() && contentType != null && MediaType.valueOf(contentType).isCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+
+    private String contentType(ClientRequest request) {
+        return request.getHeaders() == null ? null
+                : request.getHeaders().firstValue("content-type").orElse(null);
+    }
+
+    private String contentTypeOrJson(ClientRequest request) {
+        String contentType = contentType(request);
+        return contentType == null ? MediaType.APPLICATION_JSON_VALUE : contentType;
+    }
+
+    private Object extractResult(DataBuffer runtimeResult, MediaType contentType) {
+        try (InputStream body = runtimeResult.asInputStream(true)) {
+            return resultExtractor.extract(body, contentType);
+        } catch (IOException e) {
+            throw new AdapterException(e.getMessage(), e);
+        }
+    }
+
+    private static void copyHeader(HttpHeaders from, String name, Map<String, List<String>> to) {
+        List<String> values = from.get(name);
+        if (values != null) {
+            to.put(name.toLowerCase(), values);
+        }
+    }
+
+    /**
+     * A request factory that writes bodies as they are read rather than buffering them, using the
+     * RestTemplate's HTTP client and so its connection pool and timeouts. Other factories are used
+     * as they are, which may buffer the request but still stream the response.
+     */
+    static ClientHttpRequestFactory streamingRequestFactory(RestTemplate restTemplate) {
+        ClientHttpRequestFactory factory = restTemplate.getRequestFactory();
+        if (factory instanceof HttpComponentsClientHttpRequestFactory) {
+            HttpComponentsClientHttpRequestFactory streaming = new HttpComponentsClientHttpRequestFactory(
+                    ((HttpComponentsClientHttpRequestFactory) factory).getHttpClient());
+            streaming.setBufferRequestBody(false);
+            return streaming;
+        }
+        return factory;
+    }
+
+    static AdapterException toAdapterException(Throwable e) {
+        if (e instanceof AdapterException) {
+            return (AdapterException) e;
+        }
+        if (e instanceof HttpClientErrorException) {
+            return new AdapterClientErrorException(e.getMessage(), e);
+        }
+        if (e instanceof HttpServerErrorException) {
+            return new AdapterServerErrorException(e.getMessage(), e);
+        }
+        if (e instanceof WebClientResponseException) {
+            WebClientResponseException responseException = (WebClientResponseException) e;
+            if (responseException.getStatusCode().is4xxClientError()) {
+                return new AdapterClientErrorException(e.getMessage(), e);
+            }
+            if (responseException.getStatusCode().is5xxServerError()) {
+                return new AdapterServerErrorException(e.getMessage(), e);
+            }
+        }
+        return new AdapterException(e.getMessage(), e);
+    }
+
+    /**
+     * A runtime's response body, handed to the caller to read. The request counts against the
+     * runtime's bulkhead and is timed until the caller closes it.
+     */
+    private class RuntimeResponseStream extends FilterInputStream {
+        private final RuntimeTarget target;
+        private final long start;
+        private final Closeable response;
+        private final long requestBytes;
+        private long responseBytes;
+        private AdapterException failure;
+        private boolean closed;
+
+        private RuntimeResponseStream(
+                RuntimeTarget target, long start, InputStream body, Closeable response, long requestBytes) {
+            super(body);
+            this.target = target;
+            this.start = start;
+            this.response = response;
+            this.requestBytes = requestBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                int next = super.read();
+                if (next != -1) {
+                    responseBytes++;
+                }
+                return next;
+            } catch (IOException e) {
+                failure = toAdapterException(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                int read = super.read(b, off, len);
+                if (read > 0) {
+                    responseBytes += read;
+                }
+                return read;
+            } catch (IOException e) {
+                failure = toAdapterException(e);
+                throw e;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                super.close();
+            } finally {
+                response.close();
+                target.release(start, failure);
+                metrics.recordExecution(
+                        target, System.nanoTime() - start, failure, requestBytes, responseBytes);
+            }
+        }
+    }
+}
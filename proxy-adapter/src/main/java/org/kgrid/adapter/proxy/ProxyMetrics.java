@@ -0,0 +1,235 @@
+package org.kgrid.adapter.proxy;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.kgrid.adapter.api.AdapterClientErrorException;
+import org.kgrid.adapter.api.AdapterServerErrorException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RequestCallback;
+
+/**
+ * Micrometer meters for activating endpoints on runtimes and executing requests on them, tagged by
+ * engine, runtime url and endpoint so slow KOs and slow runtimes can be told apart:
+ *
+ * <ul>
+ *   <li>{@value #ACTIVATION} times activations, with their outcome
+ *   <li>{@value #EXECUTION} times each request sent to a runtime, with percentiles and a histogram
+ *   <li>{@value #REQUEST_SIZE} and {@value #RESPONSE_SIZE} record body sizes in bytes
+ *   <li>{@value #IN_FLIGHT} gauges the requests each runtime is working on
+ * </ul>
+ *
+ * Timers carry an {@code outcome} of {@code success}, {@code client_error}, {@code server_error}
+ * or {@code error}, and the simple name of the {@code exception} thrown.
+ */
+public class ProxyMetrics {
+
+    static final String ACTIVATION = "kgrid.proxy.activation";
+    static final String EXECUTION = "kgrid.proxy.execution";
+    static final String REQUEST_SIZE = "kgrid.proxy.execution.request.size";
+    static final String RESPONSE_SIZE = "kgrid.proxy.execution.response.size";
+    static final String IN_FLIGHT = "kgrid.proxy.execution.in.flight";
+
+    private final MeterRegistry registry;
+
+    public ProxyMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    void recordActivation(RuntimeDescriptor runtime, URI endpointURI, long nanos, Throwable error) {
+        Timer.builder(ACTIVATION)
+                .description("Time to activate an endpoint on a remote runtime")
+                .tags(tags(runtime.getEngine(), runtime.getUrl(), endpointURI).and(outcome(error)))
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /** Reports the runtime's requests in flight, once per runtime however often it is called. */
+    void registerInFlight(RuntimeDescriptor runtime, RuntimeLoad load) {
+        Gauge.builder(IN_FLIGHT, load, RuntimeLoad::getOutstanding)
+                .description("Requests a remote runtime is working on")
+                .tags("engine", runtime.getEngine(), "runtime", runtime.getUrl())
+                .register(registry);
+    }
+
+    Endpoint forEndpoint(URI endpointURI) {
+        return new Endpoint(endpointURI);
+    }
+
+    private static Tags tags(String engine, String runtimeUrl, URI endpointURI) {
+        return Tags.of("engine", engine, "runtime", runtimeUrl, "endpoint", endpointURI.toString());
+    }
+
+    private static Tags outcome(Throwable error) {
+        String outcome;
+        if (error == null) {
+            outcome = "success";
+        } else if (error instanceof AdapterClientErrorException) {
+            outcome = "client_error";
+        } else if (error instanceof AdapterServerErrorException) {
+            outcome = "server_error";
+        } else {
+            outcome = "error";
+        }
+        return Tags.of("outcome", outcome, "exception", error == null ? "none" : error.getClass().getSimpleName());
+    }
+
+    /** The meters of one endpoint's executions. */
+    class Endpoint {
+        private final URI endpointURI;
+
+        private Endpoint(URI endpointURI) {
+            this.endpointURI = endpointURI;
+        }
+
+        /**
+         * Records a request sent to the target, with the sizes of its bodies or a negative size
+         * where that isn't known.
+         */
+        void recordExecution(RuntimeTarget target, long nanos, Throwable error, long requestBytes, long responseBytes) {
+            Tags tags = tags(target.getEngine(), target.getRuntimeUrl(), endpointURI);
+            Timer.builder(EXECUTION)
+                    .description("Time for a remote runtime to answer a request")
+                    .tags(tags.and(outcome(error)))
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .publishPercentileHistogram()
+                    .register(registry)
+                    .record(nanos, TimeUnit.NANOSECONDS);
+            if (requestBytes >= 0) {
+                DistributionSummary.builder(REQUEST_SIZE)
+                        .description("Size of request bodies sent to remote runtimes")
+                        .baseUnit("bytes")
+                        .tags(tags)
+                        .register(registry)
+                        .record(requestBytes);
+            }
+            if (responseBytes >= 0) {
+                DistributionSummary.builder(RESPONSE_SIZE)
+                        .description("Size of response bodies received from remote runtimes")
+                        .baseUnit("bytes")
+                        .tags(tags)
+                        .register(registry)
+                        .record(responseBytes);
+            }
+        }
+    }
+
+    /** Wraps the callback so the size of the body it writes is added to {@code bytes}. */
+    static RequestCallback countingRequest(RequestCallback callback, AtomicLong bytes) {
+        return request -> callback.doWithRequest(new CountingRequest(request, bytes));
+    }
+
+    /** Wraps the response body so the bytes read from it are added to {@code bytes}. */
+    static InputStream countingResponse(ClientHttpResponse response, AtomicLong bytes) throws IOException {
+        return counting(response.getBody(), bytes);
+    }
+
+    /** Wraps the stream so the bytes read from it are added to {@code bytes}. */
+    static InputStream counting(InputStream body, AtomicLong bytes) {
+        return body == null ? null : new CountingInputStream(body, bytes);
+    }
+
+    /** Wraps the stream so the bytes written to it are added to {@code bytes}. */
+    static OutputStream counting(OutputStream body, AtomicLong bytes) {
+        return new FilterOutputStream(body) {
+            @Override
+            public void write(int b) throws IOException {
+                out.write(b);
+                bytes.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                out.write(b, off, len);
+                bytes.addAndGet(len);
+            }
+        };
+    }
+
+    private static class CountingRequest implements ClientHttpRequest {
+        private final ClientHttpRequest request;
+        private final AtomicLong bytes;
+
+        private CountingRequest(ClientHttpRequest request, AtomicLong bytes) {
+            this.request = request;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public ClientHttpResponse execute() throws IOException {
+            return request.execute();
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return counting(request.getBody(), bytes);
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return request.getHeaders();
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return request.getMethod();
+        }
+
+        @Override
+        public String getMethodValue() {
+            return request.getMethodValue();
+        }
+
+        @Override
+        public URI getURI() {
+            return request.getURI();
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+        private final AtomicLong bytes;
+
+        private CountingInputStream(InputStream in, AtomicLong bytes) {
+            super(in);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int next = super.read();
+            if (next != -1) {
+                bytes.incrementAndGet();
+            }
+            return next;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytes.addAndGet(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            bytes.addAndGet(skipped);
+            return skipped;
+        }
+    }
+}
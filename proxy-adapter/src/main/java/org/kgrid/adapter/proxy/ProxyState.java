@@ -0,0 +1,92 @@
+package org.kgrid.adapter.proxy;
+
+import io.micrometer.core.instrument.Metrics;
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import org.kgrid.adapter.api.ActivationContext;
+import org.springframework.stereotype.Component;
+
+/**
+ * What the proxy adapter knows about its runtimes and endpoints, and what it has configured from
+ * its properties. The adapter is created by Spring as the controller runtimes register with and,
+ * separately, by the activator that activates endpoints on them, so both are autowired with this
+ * one bean rather than each keeping their own. An adapter created outside of Spring has its own,
+ * created when it is first used.
+ */
+@Component
+class ProxyState {
+    final RuntimeRegistry runtimes = new RuntimeRegistry();
+    String koArtifactsBaseUrl;
+    ActivationContext activationContext;
+    RuntimeHealthMonitor healthMonitor;
+    Duration statusMaxAge = Duration.ofSeconds(5);
+    Duration statusDeadline = Duration.ofSeconds(2);
+    final ArtifactResponder artifactResponder = new ArtifactResponder();
+    ArtifactCache artifactCache = new ArtifactCache(0, false);
+    int activationParallelism = 8;
+    final Map<String, Semaphore> activationPermits = new ConcurrentHashMap<>();
+    final ExecutorService activationExecutor = activationExecutor();
+    final Map<URI, MemoizingExecutor> resultCaches = new ConcurrentHashMap<>();
+    final Map<String, RuntimeLoad> runtimeLoads = new ConcurrentHashMap<>();
+    DispatchStrategy dispatchStrategy = DispatchStrategy.roundRobin();
+    final Map<String, CircuitBreaker> circuitBreakers = new ConcurrentHashMap<>();
+    final Map<String, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    CircuitBreaker.Config circuitBreakerConfig =
+            new CircuitBreaker.Config(50, 100, Duration.ofSeconds(10), 20, 10, Duration.ofSeconds(30), 3);
+    int bulkheadMaxConcurrentCalls = 50;
+    RetryBudget retryBudget = new RetryBudget(0.1, 20);
+    ProxyMetrics metrics = new ProxyMetrics(Metrics.globalRegistry);
+    ExecutionPool executionPool;
+    ExecutorService attemptPool;
+    Http2Transport http2Transport;
+    Compression compression;
+    List<WireFormat> wireFormats = List.of();
+    RegistrySnapshot registrySnapshot;
+    RefreshScheduler refreshScheduler;
+    boolean incrementalActivation = true;
+    final Map<URI, EndpointActivation> endpointActivations = new ConcurrentHashMap<>();
+    final Set<String> restoredRuntimes = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Stops the health checks, refreshes and the adapter's pools when the application stops, and
+     * writes any registry change not yet in the snapshot.
+     */
+    @PreDestroy
+    void shutdown() {
+        if (healthMonitor != null) {
+            healthMonitor.shutdown();
+        }
+        if (refreshScheduler != null) {
+            refreshScheduler.shutdown();
+        }
+        if (registrySnapshot != null) {
+            registrySnapshot.shutdown();
+        }
+        if (executionPool != null) {
+            executionPool.shutdown();
+        }
+        if (attemptPool != null) {
+            attemptPool.shutdown();
+        }
+        activationExecutor.shutdown();
+    }
+
+    private static ExecutorService activationExecutor() {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(
+                runnable -> {
+                    Thread thread = new Thread(runnable, "proxy-activation-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+}
@@ -0,0 +1,172 @@
+package org.kgrid.adapter.proxy;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Refreshes engines on background threads, so a runtime registering doesn't wait for the activator
+ * to reactivate every endpoint. The first request for an engine opens a debounce window, and every
+ * request made before the window closes is served by the one refresh that runs when it does, so a
+ * fleet of runtimes restarting together costs one refresh. A request made while the engine is
+ * refreshing may have come too late for it, so it schedules another refresh after that one.
+ * Different engines refresh in parallel; one engine never refreshes twice at once.
+ */
+class RefreshScheduler {
+
+    enum State {
+        IDLE, PENDING, RUNNING;
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Consumer<String> refresh;
+    private final Duration debounce;
+    private final Map<String, EngineRefresh> engines = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor =
+            Executors.newCachedThreadPool(
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "proxy-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "proxy-refresh-debounce");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    /** @param debounce how long to collect requests for an engine before refreshing it */
+    RefreshScheduler(Consumer<String> refresh, Duration debounce) {
+        this.refresh = refresh;
+        this.debounce = debounce;
+    }
+
+    /** Asks for the engine to be refreshed, and returns whether its refresh is pending or running. */
+    State request(String engine) {
+        return engines.computeIfAbsent(engine, EngineRefresh::new).request();
+    }
+
+    State getState(String engine) {
+        EngineRefresh engineRefresh = engines.get(engine);
+        return engineRefresh == null ? State.IDLE : engineRefresh.getState();
+    }
+
+    /** Returns each engine's refresh state, how many requests its refreshes served, and how the last one went. */
+    Map<String, Object> getStats() {
+        Map<String, Object> stats = new TreeMap<>();
+        engines.forEach((engine, engineRefresh) -> stats.put(engine, engineRefresh.getStats()));
+        return stats;
+    }
+
+    /** Drops pending refreshes and stops; a refresh already running is left to finish. */
+    void shutdown() {
+        scheduler.shutdownNow();
+        refreshExecutor.shutdown();
+    }
+
+    private class EngineRefresh {
+        private final String engine;
+        private State state = State.IDLE;
+        private boolean requestedWhileRunning;
+        private long requests;
+        private long refreshes;
+        private Duration lastDuration;
+        private Instant lastCompleted;
+        private String lastError;
+
+        private EngineRefresh(String engine) {
+            this.engine = engine;
+        }
+
+        synchronized State request() {
+            requests++;
+            if (state == State.IDLE) {
+                schedule();
+            } else if (state == State.RUNNING) {
+                requestedWhileRunning = true;
+            }
+            return state;
+        }
+
+        synchronized State getState() {
+            return state;
+        }
+
+        synchronized Map<String, Object> getStats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("state", state.toString());
+            stats.put("requests", requests);
+            stats.put("refreshes", refreshes);
+            stats.put("lastDurationMillis", lastDuration == null ? null : lastDuration.toMillis());
+            stats.put("lastCompleted", lastCompleted == null ? null : lastCompleted.toString());
+            stats.put("lastError", lastError);
+            return stats;
+        }
+
+        private void schedule() {
+            state = State.PENDING;
+            try {
+                scheduler.schedule(this::start, debounce.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                state = State.IDLE;
+            }
+        }
+
+        private void start() {
+            try {
+                refreshExecutor.execute(this::run);
+            } catch (RejectedExecutionException e) {
+                synchronized (this) {
+                    state = State.IDLE;
+                }
+            }
+        }
+
+        private void run() {
+            synchronized (this) {
+                state = State.RUNNING;
+            }
+            long startTime = System.nanoTime();
+            String error = null;
+            try {
+                refresh.accept(engine);
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+                log.warn("Refresh of the " + engine + " engine failed: " + error, e);
+            }
+            Duration duration = Duration.ofNanos(System.nanoTime() - startTime);
+            synchronized (this) {
+                refreshes++;
+                lastDuration = duration;
+                lastCompleted = Instant.now();
+                lastError = error;
+                if (requestedWhileRunning) {
+                    requestedWhileRunning = false;
+                    schedule();
+                } else {
+                    state = State.IDLE;
+                }
+            }
+            log.debug("Refreshed the " + engine + " engine in " + duration.toMillis() + "ms");
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package org.kgrid.adapter.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps a copy of the runtime registry, and the url runtimes fetch artifacts from, in a local file
+ * so a restarted activator can route to its runtimes before they register again. The file is
+ * rewritten on a background thread a short while after the registry changes, so a burst of
+ * registrations or health checks costs one write and the request path never waits on the disk.
+ * Each write goes to a temporary file that is then moved over the snapshot, so a crash mid-write
+ * leaves the previous snapshot in place.
+ */
+class RegistrySnapshot implements RuntimeRegistryListener {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final Path file;
+    private final RuntimeRegistry runtimes;
+    private final Duration delay;
+    private final AtomicBoolean pending = new AtomicBoolean();
+    private final ScheduledExecutorService writer =
+            Executors.newSingleThreadScheduledExecutor(
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "proxy-registry-snapshot");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+    private volatile String artifactsBaseUrl;
+    private byte[] written;
+
+    /** @param delay how long after a change to write the snapshot, so later changes share the write */
+    RegistrySnapshot(Path file, RuntimeRegistry runtimes, Duration delay) {
+        this.file = file;
+        this.runtimes = runtimes;
+        this.delay = delay;
+    }
+
+    /**
+     * Registers the runtimes in the snapshot that aren't already registered, keeping their original
+     * registration times, and returns the ids of those it registered. A missing or unreadable
+     * snapshot restores nothing.
+     */
+    synchronized List<String> restore() {
+        List<String> restored = new ArrayList<>();
+        JsonNode snapshot;
+        try {
+            written = Files.readAllBytes(file);
+            snapshot = RuntimeResultExtractor.OBJECT_MAPPER.readTree(written);
+        } catch (NoSuchFileException e) {
+            return restored;
+        } catch (IOException e) {
+            log.warn("Could not read the runtime registry snapshot " + file + ": " + e.getMessage());
+            return restored;
+        }
+        artifactsBaseUrl = snapshot.path("artifactsBaseUrl").textValue();
+        for (JsonNode saved : snapshot.path("runtimes")) {
+            String engine = saved.path("engine").asText();
+            String url = saved.path("url").asText();
+            if (engine.isEmpty() || url.isEmpty() || !saved.path("details").isObject()
+                    || runtimes.containsInstance(RuntimeDescriptor.id(engine, url))) {
+                continue;
+            }
+            Instant registeredAt = Instant.ofEpochMilli(saved.path("registeredAt").asLong(System.currentTimeMillis()));
+            RuntimeDescriptor runtime =
+                    RuntimeDescriptor.restore(engine, url, (ObjectNode) saved.get("details"), registeredAt);
+            runtimes.register(engine, url, existing -> {
+                if (existing != null) {
+                    return existing;
+                }
+                restored.add(runtime.getId());
+                return runtime;
+            });
+        }
+        log.info("Restored " + restored.size() + " runtimes from " + file);
+        return restored;
+    }
+
+    /** The url runtimes fetch artifacts from, as last saved, or null if it was never saved. */
+    String getArtifactsBaseUrl() {
+        return artifactsBaseUrl;
+    }
+
+    void setArtifactsBaseUrl(String url) {
+        if (url != null && !url.equals(artifactsBaseUrl)) {
+            artifactsBaseUrl = url;
+            changed();
+        }
+    }
+
+    @Override
+    public void runtimeRegistered(RuntimeDescriptor previous, RuntimeDescriptor current) {
+        changed();
+    }
+
+    @Override
+    public void runtimeUpdated(RuntimeDescriptor previous, RuntimeDescriptor current) {
+        changed();
+    }
+
+    @Override
+    public void runtimeRemoved(RuntimeDescriptor removed) {
+        changed();
+    }
+
+    /** Writes any change still waiting for its write, then stops the writer thread. */
+    void shutdown() {
+        writer.shutdownNow();
+        if (pending.getAndSet(false)) {
+            writeQuietly();
+        }
+    }
+
+    /**
+     * Writes the registry as it is now, unless it is the same as the last snapshot read or written.
+     * Only the writer thread calls this outside of tests.
+     */
+    synchronized void write() throws IOException {
+        byte[] snapshot = RuntimeResultExtractor.OBJECT_MAPPER.writeValueAsBytes(toJson());
+        if (Arrays.equals(snapshot, written)) {
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temp, snapshot);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        written = snapshot;
+    }
+
+    private void changed() {
+        if (!pending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            writer.schedule(
+                    () -> {
+                        pending.set(false);
+                        writeQuietly();
+                    },
+                    delay.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            pending.set(false);
+        }
+    }
+
+    private void writeQuietly() {
+        try {
+            write();
+        } catch (IOException e) {
+            log.warn("Could not write the runtime registry snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    private ObjectNode toJson() {
+        ObjectNode snapshot = RuntimeResultExtractor.OBJECT_MAPPER.createObjectNode();
+        snapshot.put("artifactsBaseUrl", artifactsBaseUrl);
+        ArrayNode saved = snapshot.putArray("runtimes");
+        List<RuntimeDescriptor> all = runtimes.getAll();
+        all.sort(Comparator.comparing(RuntimeDescriptor::getId));
+        for (RuntimeDescriptor runtime : all) {
+            ObjectNode entry = saved.addObject();
+            entry.put("engine", runtime.getEngine());
+            entry.put("url", runtime.getUrl());
+            entry.put("registeredAt", runtime.getRegisteredAt().toEpochMilli());
+            entry.set("details", runtime.toJson());
+        }
+        return snapshot;
+    }
+}
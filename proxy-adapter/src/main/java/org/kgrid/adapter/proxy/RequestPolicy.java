@@ -0,0 +1,301 @@
+package org.kgrid.adapter.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.kgrid.adapter.api.AdapterClientErrorException;
+import org.kgrid.adapter.api.AdapterException;
+import org.kgrid.adapter.api.AdapterServerErrorException;
+import org.kgrid.adapter.api.AdapterUnavailableException;
+
+/**
+ * How an endpoint whose requests are safe to repeat is called, as declared in its deployment spec:
+ *
+ * <pre>
+ * retry:
+ *   maxAttempts: 3      # attempts in all, including the first and any hedge
+ *   backoff: 50         # milliseconds to wait before retrying
+ * hedge:
+ *   percentile: 95      # send a second request when the first is slower than this percentile
+ *   delay: 100          # milliseconds to wait instead, until enough responses have been timed
+ * deadline: 5000        # milliseconds before the request fails, however many attempts are left
+ * </pre>
+ *
+ * Requests that fail with a connection error or a server error are retried, and a request that
+ * hasn't answered by the hedge delay is sent again while the first is still waiting. The first
+ * answer is used and the other attempt is cancelled. Every retry and hedge must be allowed by the
+ * shared {@link RetryBudget}. Refusals by the runtime's circuit breaker or bulkhead, and the
+ * deadline itself, fail the request at once.
+ *
+ * <p>Blocking attempts run on a bounded pool shared by all endpoints, so that one can be left
+ * behind when another answers first. When the pool's threads and queue are full an attempt is
+ * refused with an {@link AdapterUnavailableException} instead of waiting.
+ */
+class RequestPolicy {
+
+    /** Responses that must be timed before hedging uses the percentile instead of the delay. */
+    static final int MIN_HEDGE_SAMPLES = 20;
+
+    private static final AtomicInteger threadCount = new AtomicInteger();
+    private static final ScheduledThreadPoolExecutor timer = timer();
+
+    private final int maxAttempts;
+    private final Duration backoff;
+    private final double hedgePercentile;
+    private final Duration hedgeDelay;
+    private final Duration deadline;
+    private final ExecutorService attempts;
+
+    /** @param attempts the pool blocking attempts run on, from {@link #attemptPool} */
+    RequestPolicy(
+            int maxAttempts,
+            Duration backoff,
+            double hedgePercentile,
+            Duration hedgeDelay,
+            Duration deadline,
+            ExecutorService attempts) {
+        this.maxAttempts = Math.max(maxAttempts, 1);
+        this.backoff = backoff;
+        this.hedgePercentile = hedgePercentile;
+        this.hedgeDelay = hedgeDelay;
+        this.deadline = deadline;
+        this.attempts = attempts;
+    }
+
+    /** Reads the policy from the deployment spec, returning null if it asks for none. */
+    static RequestPolicy fromSpec(JsonNode deploymentSpec, ExecutorService attempts) {
+        JsonNode retry = deploymentSpec.path("retry");
+        JsonNode hedge = deploymentSpec.path("hedge");
+        long deadline = deploymentSpec.path("deadline").asLong(0);
+        if (!retry.isObject() && !hedge.isObject() && deadline <= 0) {
+            return null;
+        }
+        int maxAttempts = retry.path("maxAttempts").asInt(retry.isObject() ? 3 : hedge.isObject() ? 2 : 1);
+        return new RequestPolicy(
+                maxAttempts,
+                Duration.ofMillis(Math.max(retry.path("backoff").asLong(0), 0)),
+                hedge.isObject() ? hedge.path("percentile").asDouble(95) : 0,
+                Duration.ofMillis(Math.max(hedge.path("delay").asLong(100), 0)),
+                deadline > 0 ? Duration.ofMillis(deadline) : null,
+                attempts);
+    }
+
+    /**
+     * Creates the pool blocking attempts run on: at most {@code maxThreads} run at once and
+     * {@code maxQueued} more wait for a thread, and beyond that attempts are refused.
+     */
+    static ThreadPoolExecutor attemptPool(int maxThreads, int maxQueued) {
+        int threads = Math.max(maxThreads, 1);
+        BlockingQueue<Runnable> queue = maxQueued > 0 ? new ArrayBlockingQueue<>(maxQueued) : new SynchronousQueue<>();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(
+                threads, threads, 60, TimeUnit.SECONDS, queue,
+                runnable -> daemon(runnable, "proxy-attempt-" + threadCount.incrementAndGet()));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Runs a blocking call under this policy, each attempt on a pooled thread, and waits for the
+     * first answer. An attempt that is no longer needed is interrupted, or dropped if it hasn't
+     * started.
+     */
+    <T> T callBlocking(Supplier<T> attempt, RetryBudget budget, LatencyTracker latencies) {
+        CompletableFuture<T> result = call(() -> submit(attempt), budget, latencies);
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            throw ProxyExecutor.toAdapterException(e.getCause());
+        } catch (InterruptedException e) {
+            result.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new AdapterException("Interrupted while waiting for the remote runtime", e);
+        }
+    }
+
+    /** Runs a call under this policy, starting each attempt with {@code attempt}. */
+    <T> CompletableFuture<T> call(
+            Supplier<CompletableFuture<T>> attempt, RetryBudget budget, LatencyTracker latencies) {
+        budget.onRequest();
+        return new Call<>(attempt, budget, latencies).start();
+    }
+
+    static boolean isRetryable(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            error = error.getCause();
+        }
+        if (error instanceof AdapterClientErrorException
+                || error instanceof AdapterUnavailableException
+                || error.getCause() instanceof TimeoutException) {
+            return false;
+        }
+        if (error instanceof AdapterServerErrorException) {
+            return true;
+        }
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Runs one blocking attempt on the pool; cancelling the future interrupts it. */
+    private <T> CompletableFuture<T> submit(Supplier<T> attempt) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = attempts.submit(() -> {
+                try {
+                    future.complete(attempt.get());
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new AdapterUnavailableException(
+                    attempts.isShutdown()
+                            ? "The proxy adapter is shutting down"
+                            : "The proxy adapter is saturated: no thread is free to call the runtime",
+                    e));
+            return future;
+        }
+        future.whenComplete((value, error) -> {
+            if (future.isCancelled()) {
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    private static ScheduledThreadPoolExecutor timer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(
+                1, runnable -> daemon(runnable, "proxy-request-timer"));
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static Thread daemon(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /** One request and its attempts. */
+    private final class Call<T> {
+        private final Supplier<CompletableFuture<T>> attempt;
+        private final RetryBudget budget;
+        private final LatencyTracker latencies;
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final List<CompletableFuture<T>> inFlight = new ArrayList<>();
+        private final List<ScheduledFuture<?>> timers = new ArrayList<>();
+        private int started;
+
+        private Call(Supplier<CompletableFuture<T>> attempt, RetryBudget budget, LatencyTracker latencies) {
+            this.attempt = attempt;
+            this.budget = budget;
+            this.latencies = latencies;
+        }
+
+        private CompletableFuture<T> start() {
+            if (deadline != null) {
+                schedule(this::expire, deadline.toMillis(), TimeUnit.MILLISECONDS);
+            }
+            result.whenComplete((value, error) -> cancelInFlight());
+            launch();
+            return result;
+        }
+
+        private synchronized void launch() {
+            if (result.isDone()) {
+                return;
+            }
+            started++;
+            CompletableFuture<T> future;
+            try {
+                future = attempt.get();
+            } catch (RuntimeException e) {
+                future = CompletableFuture.failedFuture(e);
+            }
+            inFlight.add(future);
+            long startNanos = System.nanoTime();
+            CompletableFuture<T> launched = future;
+            future.whenComplete((value, error) -> onComplete(launched, value, error, startNanos));
+            if (hedgePercentile > 0 && started < maxAttempts && !future.isDone()) {
+                schedule(this::hedge, hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private synchronized void hedge() {
+            if (!result.isDone() && started < maxAttempts && budget.tryRetry()) {
+                launch();
+            }
+        }
+
+        private synchronized void onComplete(CompletableFuture<T> future, T value, Throwable error, long startNanos) {
+            inFlight.remove(future);
+            if (result.isDone()) {
+                return;
+            }
+            if (error == null) {
+                latencies.record(System.nanoTime() - startNanos);
+                result.complete(value);
+                return;
+            }
+            if (isRetryable(error) && started < maxAttempts && budget.tryRetry()) {
+                if (backoff.isZero()) {
+                    launch();
+                } else {
+                    schedule(this::launch, backoff.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            } else if (inFlight.isEmpty()) {
+                result.completeExceptionally(
+                        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error);
+            }
+        }
+
+        private void expire() {
+            String message = String.format(
+                    "Remote runtime did not answer within the %d ms deadline", deadline.toMillis());
+            result.completeExceptionally(new AdapterServerErrorException(message, new TimeoutException(message)));
+        }
+
+        /** Schedules a step of this call, to be cancelled with the rest once the call completes. */
+        private synchronized void schedule(Runnable step, long delay, TimeUnit unit) {
+            if (!result.isDone()) {
+                timers.add(timer.schedule(step, delay, unit));
+            }
+        }
+
+        private long hedgeDelayNanos() {
+            if (latencies.getCount() < MIN_HEDGE_SAMPLES) {
+                return hedgeDelay.toNanos();
+            }
+            return latencies.percentile(hedgePercentile);
+        }
+
+        private synchronized void cancelInFlight() {
+            new ArrayList<>(inFlight).forEach(future -> future.cancel(true));
+            inFlight.clear();
+            timers.forEach(task -> task.cancel(false));
+            timers.clear();
+        }
+    }
+}
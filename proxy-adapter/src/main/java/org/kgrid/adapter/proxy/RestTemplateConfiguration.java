@@ -1,14 +1,143 @@
 package org.kgrid.adapter.proxy;
 
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.HeaderElement;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.message.BasicHeaderElementIterator;
+import org.apache.http.protocol.HTTP;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+/**
+ * HTTP clients used to talk to remote runtimes. Both clients keep pooled, keep-alive connections
+ * so that small KO invocations don't pay for a new TCP connection on every call. Pool sizes and
+ * timeouts are set with the {@code kgrid.adapter.proxy.http.*} properties.
+ *
+ * <p>The reactive client's pool applies the same per-runtime limit, keep-alive and time to live as
+ * the Apache pool, but Reactor Netty pools connections per remote address and has no limit across
+ * them, so {@code max-total} only bounds the blocking client. It doesn't read the runtime's
+ * {@code Keep-Alive} header either, and keeps idle connections for the configured keep-alive.
+ */
 @Configuration
 public class RestTemplateConfiguration {
+
+  @Value("${kgrid.adapter.proxy.http.max-total:200}")
+  private int maxTotal;
+
+  @Value("${kgrid.adapter.proxy.http.max-per-runtime:50}")
+  private int maxPerRuntime;
+
+  @Value("${kgrid.adapter.proxy.http.connect-timeout:5000}")
+  private int connectTimeout;
+
+  @Value("${kgrid.adapter.proxy.http.read-timeout:60000}")
+  private int readTimeout;
+
+  @Value("${kgrid.adapter.proxy.http.acquire-timeout:5000}")
+  private int acquireTimeout;
+
+  @Value("${kgrid.adapter.proxy.http.keep-alive:30000}")
+  private long keepAlive;
+
+  @Value("${kgrid.adapter.proxy.http.idle-eviction:60000}")
+  private long idleEviction;
+
+  @Value("${kgrid.adapter.proxy.http.time-to-live:0}")
+  private long timeToLive;
+
+  @Bean(destroyMethod = "close")
+  public PoolingHttpClientConnectionManager proxyConnectionManager() {
+    // a time to live of 0 or less keeps connections for as long as they are kept alive
+    PoolingHttpClientConnectionManager connectionManager =
+        new PoolingHttpClientConnectionManager(timeToLive, TimeUnit.MILLISECONDS);
+    connectionManager.setMaxTotal(maxTotal);
+    connectionManager.setDefaultMaxPerRoute(maxPerRuntime);
+    return connectionManager;
+  }
+
+  @Bean(destroyMethod = "close")
+  public CloseableHttpClient proxyHttpClient(PoolingHttpClientConnectionManager proxyConnectionManager) {
+    RequestConfig requestConfig =
+        RequestConfig.custom()
+            .setConnectTimeout(connectTimeout)
+            .setSocketTimeout(readTimeout)
+            .setConnectionRequestTimeout(acquireTimeout)
+            .build();
+    return HttpClients.custom()
+        .setConnectionManager(proxyConnectionManager)
+        .setDefaultRequestConfig(requestConfig)
+        .setKeepAliveStrategy(keepAliveStrategy())
+        .evictExpiredConnections()
+        .evictIdleConnections(idleEviction, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
   @Bean
-  public RestTemplate restTemplate(RestTemplateBuilder builder) {
-    return builder.build();
+  public RestTemplate restTemplate(RestTemplateBuilder builder, CloseableHttpClient proxyHttpClient) {
+    return builder
+        .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(proxyHttpClient))
+        .build();
+  }
+
+  @Bean
+  public WebClient proxyWebClient() {
+    ConnectionProvider.Builder pool =
+        ConnectionProvider.builder("proxy-runtimes")
+            .maxConnections(maxPerRuntime)
+            .pendingAcquireTimeout(Duration.ofMillis(acquireTimeout))
+            .maxIdleTime(Duration.ofMillis(Math.min(keepAlive, idleEviction)))
+            .metrics(true);
+    if (timeToLive > 0) {
+      pool.maxLifeTime(Duration.ofMillis(timeToLive));
+    }
+    ConnectionProvider connectionProvider = pool.build();
+    HttpClient httpClient =
+        HttpClient.create(connectionProvider)
+            // asks for gzip and decompresses it, as the Apache client does by default
+            .compress(true)
+            .tcpConfiguration(
+                tcpClient -> tcpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeout))
+            .doOnRequest(
+                (request, connection) -> {
+                  if (readTimeout > 0) {
+                    connection.addHandlerLast(
+                        new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS));
+                  }
+                });
+    return WebClient.builder().clientConnector(new ReactorClientHttpConnector(httpClient)).build();
+  }
+
+  /** Honors a runtime's Keep-Alive timeout header and otherwise keeps connections for the configured time. */
+  private ConnectionKeepAliveStrategy keepAliveStrategy() {
+    return (response, context) -> {
+      BasicHeaderElementIterator headers =
+          new BasicHeaderElementIterator(response.headerIterator(HTTP.CONN_KEEP_ALIVE));
+      while (headers.hasNext()) {
+        HeaderElement header = headers.nextElement();
+        if ("timeout".equalsIgnoreCase(header.getName()) && header.getValue() != null) {
+          try {
+            return Long.parseLong(header.getValue()) * 1000;
+          } catch (NumberFormatException ignored) {
+            // fall through to the configured keep-alive
+          }
+        }
+      }
+      return keepAlive;
+    };
   }
 }
@@ -0,0 +1,53 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caps retries and hedged requests, across every endpoint, at a share of the requests the
+ * activator sends. Each request adds {@code ratio} of a token, up to {@code burst} tokens, and each
+ * retry or hedge spends a whole one. When runtimes are failing the tokens run out and requests fail
+ * after their first attempt, so retries can't multiply the load on runtimes that are already
+ * struggling.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double burst;
+    private double tokens;
+    private long spent;
+    private long refused;
+
+    /**
+     * @param ratio retries allowed per request sent, 0.1 allows one retry for every ten requests
+     * @param burst most retries that can be saved up, and the number available at start up
+     */
+    public RetryBudget(double ratio, int burst) {
+        this.ratio = ratio;
+        this.burst = Math.max(burst, 0);
+        this.tokens = this.burst;
+    }
+
+    synchronized void onRequest() {
+        tokens = Math.min(burst, tokens + ratio);
+    }
+
+    /** Spends a token for a retry or hedge, returning false if none are left. */
+    synchronized boolean tryRetry() {
+        if (tokens < 1) {
+            refused++;
+            return false;
+        }
+        tokens -= 1;
+        spent++;
+        return true;
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("available", (long) tokens);
+        stats.put("retries", spent);
+        stats.put("refused", refused);
+        return stats;
+    }
+}
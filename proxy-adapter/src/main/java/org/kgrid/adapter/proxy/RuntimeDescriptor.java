@@ -0,0 +1,140 @@
+package org.kgrid.adapter.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of a registered remote runtime. The routing fields are plain values so the
+ * execution path never touches JSON; the details reported by the runtime are kept in a private
+ * copy and only handed out as fresh copies.
+ */
+public final class RuntimeDescriptor {
+
+    private final String engine;
+    private final String url;
+    private final String status;
+    private final Instant registeredAt;
+    private final boolean batch;
+    private final int maxBatchSize;
+    private final boolean http2;
+    private final Set<String> requestEncodings;
+    private final Set<String> formats;
+    private final String instanceId;
+    private final ObjectNode details;
+
+    public RuntimeDescriptor(String engine, String url, ObjectNode details) {
+        this(engine, url, details.deepCopy(), Instant.now());
+    }
+
+    private RuntimeDescriptor(String engine, String url, ObjectNode details, Instant registeredAt) {
+        this.engine = engine;
+        this.url = url;
+        this.status = details.path("status").asText();
+        this.registeredAt = registeredAt;
+        this.batch = details.path("batch").asBoolean(false);
+        this.maxBatchSize = details.path("maxBatchSize").asInt(0);
+        this.http2 = details.path("http2").asBoolean(false);
+        this.requestEncodings = lowerCaseSet(details.path("requestEncodings"));
+        this.formats = lowerCaseSet(details.path("formats"));
+        JsonNode instance = details.path("instanceId");
+        this.instanceId = instance.isValueNode() && !instance.isNull() ? instance.asText() : null;
+        this.details = details;
+    }
+
+    /** Recreates a registration saved earlier, keeping the time the runtime first registered. */
+    static RuntimeDescriptor restore(String engine, String url, ObjectNode details, Instant registeredAt) {
+        return new RuntimeDescriptor(engine, url, details.deepCopy(), registeredAt);
+    }
+
+    /** Identifies one runtime instance among all those registered, across engines. */
+    public static String id(String engine, String url) {
+        return engine + "@" + url;
+    }
+
+    public String getId() {
+        return id(engine, url);
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Instant getRegisteredAt() {
+        return registeredAt;
+    }
+
+    public boolean isUp() {
+        return "up".equalsIgnoreCase(status);
+    }
+
+    /** Whether the runtime accepts an array of inputs at {@code {endpoint}/batch}. */
+    public boolean supportsBatch() {
+        return batch;
+    }
+
+    /** The most inputs the runtime accepts in one batch, or 0 if it has no limit. */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** Whether the runtime accepts HTTP/2, over h2c when its url is plain http. */
+    public boolean supportsHttp2() {
+        return http2;
+    }
+
+    /** Whether the runtime accepts request bodies compressed with the content coding. */
+    public boolean acceptsRequestEncoding(String encoding) {
+        return requestEncodings.contains(encoding);
+    }
+
+    /** Whether the runtime reads and writes the named format, such as {@code cbor}, besides JSON. */
+    public boolean acceptsFormat(String format) {
+        return formats.contains(format);
+    }
+
+    /**
+     * The id the runtime gives the process it is running in, which changes when it restarts, or
+     * null if it doesn't report one.
+     */
+    public String getInstanceId() {
+        return instanceId;
+    }
+
+    /** Returns a detail reported by the runtime, or a missing node if it didn't report one. */
+    public JsonNode getDetail(String name) {
+        return details.path(name).deepCopy();
+    }
+
+    public ObjectNode toJson() {
+        return details.deepCopy();
+    }
+
+    /** Returns a copy of this registration with new details reported by the runtime. */
+    public RuntimeDescriptor withDetails(ObjectNode newDetails) {
+        return new RuntimeDescriptor(engine, url, newDetails.deepCopy(), registeredAt);
+    }
+
+    public RuntimeDescriptor withStatus(String newStatus) {
+        ObjectNode newDetails = details.deepCopy();
+        newDetails.put("status", newStatus);
+        return new RuntimeDescriptor(engine, url, newDetails, registeredAt);
+    }
+
+    private static Set<String> lowerCaseSet(JsonNode values) {
+        Set<String> set = new HashSet<>();
+        values.forEach(value -> set.add(value.asText().toLowerCase(Locale.ROOT)));
+        return Set.copyOf(set);
+    }
+}
@@ -0,0 +1,44 @@
+package org.kgrid.adapter.proxy;
+
+import java.time.Instant;
+
+/** Last known health of a remote runtime, as seen by a probe of its /info endpoint or a heartbeat. */
+public class RuntimeHealth {
+
+    private final String status;
+    private final Instant lastChecked;
+    private final int consecutiveFailures;
+    private final Instant downSince;
+
+    public RuntimeHealth(String status, Instant lastChecked, int consecutiveFailures) {
+        this(status, lastChecked, consecutiveFailures, "up".equalsIgnoreCase(status) ? null : lastChecked);
+    }
+
+    public RuntimeHealth(String status, Instant lastChecked, int consecutiveFailures, Instant downSince) {
+        this.status = status;
+        this.lastChecked = lastChecked;
+        this.consecutiveFailures = consecutiveFailures;
+        this.downSince = downSince;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public Instant getLastChecked() {
+        return lastChecked;
+    }
+
+    public int getConsecutiveFailures() {
+        return consecutiveFailures;
+    }
+
+    /** When the runtime was first seen down since it was last up, or null if it is up. */
+    public Instant getDownSince() {
+        return downSince;
+    }
+
+    public boolean isUp() {
+        return "up".equalsIgnoreCase(status);
+    }
+}
@@ -0,0 +1,349 @@
+package org.kgrid.adapter.proxy;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * Keeps the health of every registered runtime in memory so that activation can check it without
+ * calling the runtime. Each watched runtime is probed on its own schedule: up runtimes every
+ * polling interval, down runtimes with exponential backoff, both with random jitter so a fleet of
+ * runtimes isn't probed in lockstep. Runtimes can also report their own health with heartbeats,
+ * in which case polling can be turned off by setting the interval to zero.
+ *
+ * <p>Status reporting goes through {@link #refresh}, which probes out-of-date runtimes in parallel
+ * and waits for them only until a deadline, so one slow runtime can't hold up the report.
+ *
+ * <p>A runtime that stays down for longer than the eviction grace period is removed from the
+ * registry, so an instance that died, or came back at another url, doesn't linger. When a new
+ * instance of an engine registers, the engine's other instances are probed straight away so a
+ * dead one starts its grace period at once.
+ */
+public class RuntimeHealthMonitor implements RuntimeRegistryListener {
+
+    static final String NOT_CONNECTED = "Activator could not connect to runtime";
+    static final String NOT_REGISTERED = "Runtime is not registered";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final RestTemplate restTemplate;
+    private final RuntimeRegistry runtimes;
+    private final Duration interval;
+    private final Duration maxBackoff;
+    private final double jitter;
+    private final Duration heartbeatTimeout;
+    private final Duration evictAfter;
+    private final Map<String, RuntimeHealth> health = new ConcurrentHashMap<>();
+    private final Map<String, ScheduledFuture<?>> probes = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<RuntimeHealth>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService probeExecutor =
+            Executors.newCachedThreadPool(
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "proxy-runtime-status");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor(
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "proxy-runtime-health");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+
+    public RuntimeHealthMonitor(
+            RestTemplate restTemplate,
+            RuntimeRegistry runtimes,
+            Duration interval,
+            Duration maxBackoff,
+            double jitter,
+            Duration heartbeatTimeout) {
+        this(restTemplate, runtimes, interval, maxBackoff, jitter, heartbeatTimeout, Duration.ZERO);
+    }
+
+    /** @param evictAfter how long a runtime may stay down before it is removed, or zero to keep it */
+    public RuntimeHealthMonitor(
+            RestTemplate restTemplate,
+            RuntimeRegistry runtimes,
+            Duration interval,
+            Duration maxBackoff,
+            double jitter,
+            Duration heartbeatTimeout,
+            Duration evictAfter) {
+        this.restTemplate = restTemplate;
+        this.runtimes = runtimes;
+        this.interval = interval;
+        this.maxBackoff = maxBackoff;
+        this.jitter = jitter;
+        this.heartbeatTimeout = heartbeatTimeout;
+        this.evictAfter = evictAfter;
+    }
+
+    /**
+     * Returns the cached health of the runtime with this {@link RuntimeDescriptor#getId() id}. A runtime that has never been
+     * checked, or whose heartbeats have stopped arriving, is probed once on the calling thread.
+     */
+    public RuntimeHealth getHealth(String runtimeId) {
+        RuntimeHealth current = health.get(runtimeId);
+        if (current == null || isStale(current)) {
+            current = check(runtimeId);
+        }
+        return current;
+    }
+
+    public boolean isUp(String runtimeId) {
+        return getHealth(runtimeId).isUp();
+    }
+
+    /** Probes the runtime's /info endpoint now and caches the result. */
+    public RuntimeHealth check(String runtimeId) {
+        RuntimeHealth previous = health.get(runtimeId);
+        int failures = previous == null ? 0 : previous.getConsecutiveFailures();
+        RuntimeDescriptor runtime = runtimes.getInstance(runtimeId);
+        RuntimeHealth checked;
+        if (runtime == null) {
+            checked = new RuntimeHealth(NOT_REGISTERED, Instant.now(), failures + 1);
+        } else {
+            RuntimeDescriptor probed = runtime.withDetails(fetchRuntimeInfo(runtime));
+            Instant now = Instant.now();
+            Instant downSince = probed.isUp() ? null
+                    : previous != null && previous.getDownSince() != null ? previous.getDownSince() : now;
+            checked = new RuntimeHealth(probed.getStatus(), now, probed.isUp() ? 0 : failures + 1, downSince);
+            if (!runtimes.compareAndSet(runtime, probed)) {
+                // The runtime re-registered while it was being probed, so this result is for the old one
+                return getHealth(runtimeId);
+            }
+        }
+        health.put(runtimeId, checked);
+        if (isEvictable(checked) && runtimes.remove(runtimeId) != null) {
+            log.info("Removed runtime " + runtimeId + ", which has been down since " + checked.getDownSince());
+        }
+        return checked;
+    }
+
+    /**
+     * Probes the runtime on a background thread. Concurrent callers asking for the same runtime
+     * share a single probe.
+     */
+    public CompletableFuture<RuntimeHealth> checkAsync(String runtimeId) {
+        CompletableFuture<RuntimeHealth> probe = new CompletableFuture<>();
+        CompletableFuture<RuntimeHealth> existing = inFlight.putIfAbsent(runtimeId, probe);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            probeExecutor.execute(
+                    () -> {
+                        try {
+                            RuntimeHealth checked = check(runtimeId);
+                            inFlight.remove(runtimeId, probe);
+                            probe.complete(checked);
+                        } catch (Exception e) {
+                            inFlight.remove(runtimeId, probe);
+                            probe.completeExceptionally(e);
+                        }
+                    });
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(runtimeId, probe);
+            probe.completeExceptionally(e);
+        }
+        return probe;
+    }
+
+    /**
+     * Starts a probe of every runtime last checked more than {@code maxAge} ago and waits up to
+     * {@code deadline} for them. Probes still running at the deadline carry on in the background
+     * and update the cache when they finish; until then the runtime keeps its last known state.
+     * A zero deadline returns immediately, which serves the cached state while it is revalidated.
+     */
+    public void refresh(Duration maxAge, Duration deadline) {
+        Instant oldest = Instant.now().minus(maxAge);
+        List<CompletableFuture<RuntimeHealth>> pending = new ArrayList<>();
+        for (String runtimeId : runtimes.getIds()) {
+            RuntimeHealth current = health.get(runtimeId);
+            if (current == null || current.getLastChecked().isBefore(oldest)) {
+                pending.add(checkAsync(runtimeId));
+            }
+        }
+        if (pending.isEmpty() || deadline.isZero() || deadline.isNegative()) {
+            return;
+        }
+        try {
+            CompletableFuture.allOf(pending.toArray(new CompletableFuture<?>[0]))
+                    .get(deadline.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("Runtime status deadline of " + deadline.toMillis() + "ms passed, reporting last known status");
+        } catch (ExecutionException e) {
+            log.warn("Runtime status check failed: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /** Records a heartbeat pushed by the runtime, which counts as a successful probe. */
+    public RuntimeHealth heartbeat(String runtimeId, ObjectNode heartbeatDetails) {
+        runtimes.update(
+                runtimeId,
+                runtime -> {
+                    ObjectNode runtimeDetails = runtime.toJson();
+                    if (heartbeatDetails != null) {
+                        runtimeDetails.setAll(heartbeatDetails);
+                    }
+                    runtimeDetails.put("status", "up");
+                    return runtime.withDetails(runtimeDetails);
+                });
+        RuntimeHealth beat = new RuntimeHealth("up", Instant.now(), 0);
+        health.put(runtimeId, beat);
+        return beat;
+    }
+
+    @Override
+    public void runtimeRegistered(RuntimeDescriptor previous, RuntimeDescriptor current) {
+        watch(current.getId());
+        if (previous == null && !evictAfter.isZero()) {
+            // The new instance may be a restart of one at another url, so find out if the others are still there
+            runtimes.getInstances(current.getEngine()).stream()
+                    .filter(other -> !other.getId().equals(current.getId()))
+                    .forEach(other -> checkAsync(other.getId()));
+        }
+    }
+
+    @Override
+    public void runtimeRemoved(RuntimeDescriptor removed) {
+        health.remove(removed.getId());
+        ScheduledFuture<?> probe = probes.remove(removed.getId());
+        if (probe != null) {
+            probe.cancel(false);
+        }
+    }
+
+    /**
+     * Starts polling a newly registered (or re-registered) runtime, forgetting any health cached
+     * for the runtime it replaces. The first probe happens on activation or the next poll,
+     * whichever comes first.
+     */
+    public void watch(String runtimeId) {
+        health.remove(runtimeId);
+        if (!interval.isZero() && !interval.isNegative()) {
+            schedule(runtimeId, withJitter(interval));
+        }
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        probeExecutor.shutdownNow();
+    }
+
+    private void schedule(String runtimeId, Duration delay) {
+        ScheduledFuture<?> next =
+                scheduler.schedule(() -> poll(runtimeId), delay.toMillis(), TimeUnit.MILLISECONDS);
+        ScheduledFuture<?> previous = probes.put(runtimeId, next);
+        if (previous != null && previous != next) {
+            previous.cancel(false);
+        }
+    }
+
+    private void poll(String runtimeId) {
+        if (!runtimes.containsInstance(runtimeId)) {
+            probes.remove(runtimeId);
+            health.remove(runtimeId);
+            return;
+        }
+        RuntimeHealth checked;
+        try {
+            checked = check(runtimeId);
+        } catch (Exception e) {
+            log.warn("Health check of runtime " + runtimeId + " failed: " + e.getMessage());
+            checked = health.get(runtimeId);
+        }
+        if (runtimes.containsInstance(runtimeId)) {
+            schedule(runtimeId, withJitter(nextDelay(checked)));
+        }
+    }
+
+    private Duration nextDelay(RuntimeHealth checked) {
+        if (checked == null || checked.isUp()) {
+            return interval;
+        }
+        int doublings = Math.min(checked.getConsecutiveFailures() - 1, 16);
+        Duration backoff = interval.multipliedBy(1L << Math.max(doublings, 0));
+        return backoff.compareTo(maxBackoff) > 0 ? maxBackoff : backoff;
+    }
+
+    private Duration withJitter(Duration delay) {
+        if (jitter <= 0) {
+            return delay;
+        }
+        double factor = 1 + ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Duration.ofMillis(Math.max(1, (long) (delay.toMillis() * factor)));
+    }
+
+    private boolean isEvictable(RuntimeHealth checked) {
+        return !evictAfter.isZero()
+                && checked.getDownSince() != null
+                && checked.getDownSince().plus(evictAfter).isBefore(checked.getLastChecked());
+    }
+
+    private boolean isStale(RuntimeHealth current) {
+        return !heartbeatTimeout.isZero()
+                && current.getLastChecked().plus(heartbeatTimeout).isBefore(Instant.now());
+    }
+
+    /**
+     * Asks the runtime's /info endpoint for the id of the process it runs in now, returning null if
+     * the runtime doesn't answer or doesn't report one.
+     */
+    String fetchInstanceId(RuntimeDescriptor runtime) {
+        try {
+            ResponseEntity<JsonNode> response = restTemplate.getForEntity(runtime.getUrl() + "/info", JsonNode.class);
+            if (!response.getStatusCode().is2xxSuccessful() || response.getBody() == null) {
+                return null;
+            }
+            JsonNode instance = response.getBody().path("instanceId");
+            return instance.isValueNode() && !instance.isNull() ? instance.asText() : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the runtime's details updated with what its /info endpoint reports now. Fields the
+     * runtime registered with and /info leaves out, such as {@code http2} or {@code formats}, are
+     * kept; the status is always the one /info reports.
+     */
+    ObjectNode fetchRuntimeInfo(RuntimeDescriptor runtime) {
+        ObjectNode runtimeDetails = runtime.toJson();
+        try {
+            ResponseEntity<JsonNode> response = restTemplate.getForEntity(runtime.getUrl() + "/info", JsonNode.class);
+            if (response.getStatusCode().is2xxSuccessful()) {
+                runtimeDetails.remove("status");
+                if (response.getBody() instanceof ObjectNode) {
+                    runtimeDetails.setAll((ObjectNode) response.getBody());
+                }
+            } else {
+                runtimeDetails.put("status", "Error while retrieving runtime status: " + response.getStatusCodeValue());
+            }
+        } catch (Exception e) {
+            runtimeDetails.put("status", NOT_CONNECTED);
+        }
+        return runtimeDetails;
+    }
+}
@@ -1,5 +1,6 @@
 package org.kgrid.adapter.proxy;
 
+import java.util.Map;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.actuate.info.Info;
 import org.springframework.boot.actuate.info.InfoContributor;
@@ -12,6 +13,14 @@ public class RuntimeInfoContributor implements InfoContributor {
 
     @Override
     public void contribute(Info.Builder builder) {
-        builder.withDetail("runtimes", proxyAdapter.getRuntimes());
+        builder.withDetail("runtimes", proxyAdapter.getCachedRuntimes());
+        builder.withDetail("refresh", proxyAdapter.getRefreshStats());
+        builder.withDetail("artifactCache", proxyAdapter.getArtifactCacheStats());
+        builder.withDetail("resultCaches", proxyAdapter.getResultCacheStats());
+        builder.withDetail("retryBudget", proxyAdapter.getRetryBudgetStats());
+        Map<String, Object> executionPool = proxyAdapter.getExecutionPoolStats();
+        if (executionPool != null) {
+            builder.withDetail("executionPool", executionPool);
+        }
     }
 }
@@ -0,0 +1,42 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The requests a runtime instance is working on and how quickly it has been answering, shared by
+ * every endpoint activated on that instance so dispatch sees all of its traffic.
+ */
+public class RuntimeLoad {
+
+    /** Weight of the latest response time in the moving average. */
+    static final double EWMA_WEIGHT = 0.2;
+
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicLong averageNanos = new AtomicLong(Double.doubleToLongBits(0));
+
+    /** Records the start of a request and returns its start time for {@link #finish}. */
+    long start() {
+        outstanding.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    void finish(long startNanos) {
+        outstanding.decrementAndGet();
+        double sample = System.nanoTime() - startNanos;
+        averageNanos.getAndUpdate(bits -> {
+            double average = Double.longBitsToDouble(bits);
+            double updated = average == 0 ? sample : average + EWMA_WEIGHT * (sample - average);
+            return Double.doubleToLongBits(updated);
+        });
+    }
+
+    public int getOutstanding() {
+        return outstanding.get();
+    }
+
+    /** The moving average response time in nanoseconds, or 0 before the first response. */
+    public double getAverageNanos() {
+        return Double.longBitsToDouble(averageNanos.get());
+    }
+}
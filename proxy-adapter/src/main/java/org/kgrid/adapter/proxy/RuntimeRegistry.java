@@ -0,0 +1,139 @@
+package org.kgrid.adapter.proxy;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+import java.util.stream.Collectors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * The remote runtimes known to the proxy adapter. Several runtimes can register for the same
+ * engine, and each is kept as a separate instance identified by its engine and url. Reads never
+ * lock, and since descriptors are immutable a reader always sees a complete registration. Changes
+ * are made by replacing descriptors atomically and are announced to the registered listeners.
+ */
+public class RuntimeRegistry {
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+    private final ConcurrentMap<String, RuntimeDescriptor> runtimes = new ConcurrentHashMap<>();
+    private final List<RuntimeRegistryListener> listeners = new CopyOnWriteArrayList<>();
+
+    /** Returns the earliest registered runtime for the engine, or null if there is none. */
+    public RuntimeDescriptor get(String engine) {
+        List<RuntimeDescriptor> instances = getInstances(engine);
+        return instances.isEmpty() ? null : instances.get(0);
+    }
+
+    /** Returns the runtime with this {@link RuntimeDescriptor#getId() id}, or null if there is none. */
+    public RuntimeDescriptor getInstance(String id) {
+        return runtimes.get(id);
+    }
+
+    /** Returns every runtime registered for the engine, earliest registered first. */
+    public List<RuntimeDescriptor> getInstances(String engine) {
+        return runtimes.values().stream()
+                .filter(runtime -> runtime.getEngine().equals(engine))
+                .sorted(Comparator.comparing(RuntimeDescriptor::getRegisteredAt)
+                        .thenComparing(RuntimeDescriptor::getUrl))
+                .collect(Collectors.toList());
+    }
+
+    public boolean contains(String engine) {
+        return runtimes.values().stream().anyMatch(runtime -> runtime.getEngine().equals(engine));
+    }
+
+    public boolean containsInstance(String id) {
+        return runtimes.containsKey(id);
+    }
+
+    public List<String> getEngines() {
+        return runtimes.values().stream()
+                .map(RuntimeDescriptor::getEngine)
+                .distinct()
+                .collect(Collectors.toList());
+    }
+
+    public List<String> getIds() {
+        return new ArrayList<>(runtimes.keySet());
+    }
+
+    public List<RuntimeDescriptor> getAll() {
+        return new ArrayList<>(runtimes.values());
+    }
+
+    /**
+     * Atomically registers the runtime built by {@code registration} from the current registration
+     * of the runtime at this url (null if there is none), and returns the registration it replaced.
+     */
+    public RuntimeDescriptor register(
+            String engine, String url, UnaryOperator<RuntimeDescriptor> registration) {
+        AtomicReference<RuntimeDescriptor> previous = new AtomicReference<>();
+        RuntimeDescriptor current =
+                runtimes.compute(
+                        RuntimeDescriptor.id(engine, url),
+                        (key, existing) -> {
+                            previous.set(existing);
+                            return registration.apply(existing);
+                        });
+        listeners.forEach(listener -> notify(() -> listener.runtimeRegistered(previous.get(), current)));
+        return previous.get();
+    }
+
+    public RuntimeDescriptor register(RuntimeDescriptor runtime) {
+        return register(runtime.getEngine(), runtime.getUrl(), existing -> runtime);
+    }
+
+    /** Removes the runtime with this id, returning its last registration or null if there was none. */
+    public RuntimeDescriptor remove(String id) {
+        RuntimeDescriptor removed = runtimes.remove(id);
+        if (removed != null) {
+            listeners.forEach(listener -> notify(() -> listener.runtimeRemoved(removed)));
+        }
+        return removed;
+    }
+
+    /** Replaces {@code expected} with {@code updated} only if {@code expected} is still the current registration. */
+    public boolean compareAndSet(RuntimeDescriptor expected, RuntimeDescriptor updated) {
+        if (!runtimes.replace(expected.getId(), expected, updated)) {
+            return false;
+        }
+        listeners.forEach(listener -> notify(() -> listener.runtimeUpdated(expected, updated)));
+        return true;
+    }
+
+    /** Applies {@code update} to the current registration until it wins, returning the result or null if the runtime isn't registered. */
+    public RuntimeDescriptor update(String id, UnaryOperator<RuntimeDescriptor> update) {
+        while (true) {
+            RuntimeDescriptor current = runtimes.get(id);
+            if (current == null) {
+                return null;
+            }
+            RuntimeDescriptor updated = update.apply(current);
+            if (compareAndSet(current, updated)) {
+                return updated;
+            }
+        }
+    }
+
+    public void addListener(RuntimeRegistryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(RuntimeRegistryListener listener) {
+        listeners.remove(listener);
+    }
+
+    private void notify(Runnable notification) {
+        try {
+            notification.run();
+        } catch (Exception e) {
+            log.warn("Runtime registry listener failed: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.kgrid.adapter.proxy;
+
+/** Receives changes made to a {@link RuntimeRegistry}. Listeners are called on the thread making the change. */
+public interface RuntimeRegistryListener {
+
+    /** A runtime registered, replacing {@code previous} (the same engine at the same url) if it is not null. */
+    default void runtimeRegistered(RuntimeDescriptor previous, RuntimeDescriptor current) {}
+
+    /** The details of an existing registration changed, for example after a health check. */
+    default void runtimeUpdated(RuntimeDescriptor previous, RuntimeDescriptor current) {}
+
+    /** A runtime was removed from the registry. */
+    default void runtimeRemoved(RuntimeDescriptor removed) {}
+}
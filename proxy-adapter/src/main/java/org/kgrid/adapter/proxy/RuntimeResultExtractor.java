@@ -0,0 +1,248 @@
+package org.kgrid.adapter.proxy;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.kgrid.adapter.api.AdapterServerErrorException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+
+/**
+ * Pulls the KO result out of a runtime's response while it is being read.
+ *
+ * <p>A JSON object body is read token by token: once the {@code result} field is found only its
+ * value is kept and the rest of the body is skipped (but still read, so the connection can be
+ * reused). A JSON object without {@code result} is returned whole. Any other body is read as a
+ * whole and returned as JSON if it parses. A body that isn't valid JSON is returned as the raw
+ * text, unless it starts like an object and is longer than {@link #RAW_TEXT_LIMIT}: only that much
+ * of such a body is kept while it is parsed, so it fails as a server error instead. Bodies in a
+ * binary {@link WireFormat} are read the same way as JSON, into the same JSON values.
+ */
+public class RuntimeResultExtractor implements ResponseExtractor<Object> {
+
+    static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    static {
+        OBJECT_MAPPER.getFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    /** Most bytes of a body that starts like a JSON object that can be returned as raw text. */
+    static final int RAW_TEXT_LIMIT = 8192;
+
+    private static final String RESULT = "result";
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Override
+    public Object extractData(ClientHttpResponse response) throws IOException {
+        return extract(response.getBody(), response.getHeaders().getContentType());
+    }
+
+    public Object extract(InputStream body, Charset charset) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        BufferedInputStream in = new BufferedInputStream(body);
+        int first = peekFirstNonWhitespace(in);
+        Charset textCharset = charset == null ? StandardCharsets.UTF_8 : charset;
+        if (first == '{') {
+            // Keep the bytes read, so a body that only looks like JSON can still be returned as text
+            RecordingInputStream recorded = new RecordingInputStream(in);
+            try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(recorded)) {
+                return extractFromObject(parser);
+            } catch (JsonProcessingException e) {
+                log.error(e.getMessage());
+                String text = recorded.readAll(textCharset);
+                if (text == null) {
+                    throw new AdapterServerErrorException(
+                            "Remote runtime returned invalid JSON: " + e.getOriginalMessage(), e);
+                }
+                return text;
+            }
+        }
+        String runtimeResult = new String(in.readAllBytes(), textCharset);
+        try {
+            return OBJECT_MAPPER.readTree(runtimeResult);
+        } catch (Exception e) {
+            log.error(e.getMessage());
+        }
+        return runtimeResult;
+    }
+
+    /**
+     * Extracts the result from a body in JSON or, if the content type is one, a binary format.
+     * Binary bodies are always structured, so they are never returned as raw text.
+     */
+    public Object extract(InputStream body, MediaType contentType) throws IOException {
+        WireFormat format = WireFormat.of(contentType);
+        if (format == null) {
+            return extract(body, contentType == null ? null : contentType.getCharset());
+        }
+        if (body == null) {
+            return null;
+        }
+        try (JsonParser parser = format.getMapper().getFactory().createParser(body)) {
+            JsonToken first = parser.nextToken();
+            if (first == null) {
+                return null;
+            }
+            return first == JsonToken.START_OBJECT ? extractFromObject(parser) : readValue(parser);
+        } catch (JsonProcessingException e) {
+            throw new AdapterServerErrorException(
+                    "Remote runtime returned invalid " + format.getName() + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads the JSON array returned for a batch, extracting the result of each element the same
+     * way as for a single response.
+     */
+    public List<Object> extractBatch(InputStream body) throws IOException {
+        return extractBatch(body, null);
+    }
+
+    /** Reads the array returned for a batch in JSON or, if the content type is one, a binary format. */
+    public List<Object> extractBatch(InputStream body, MediaType contentType) throws IOException {
+        if (body == null) {
+            return null;
+        }
+        WireFormat format = WireFormat.of(contentType);
+        ObjectMapper mapper = format == null ? OBJECT_MAPPER : format.getMapper();
+        try (JsonParser parser = mapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw new AdapterServerErrorException("Remote runtime did not return an array of batch results");
+            }
+            List<Object> results = new ArrayList<>();
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token == null) {
+                    throw new AdapterServerErrorException("Remote runtime returned an incomplete array of batch results");
+                }
+                results.add(token == JsonToken.START_OBJECT
+                        ? extractFromObject(parser)
+                        : readValue(parser));
+            }
+            return results;
+        } catch (JsonProcessingException e) {
+            throw new AdapterServerErrorException("Remote runtime returned invalid JSON: " + e.getMessage(), e);
+        }
+    }
+
+    private JsonNode extractFromObject(JsonParser parser) throws IOException {
+        if (parser.currentToken() == null) {
+            parser.nextToken();
+        }
+        ObjectNode whole = OBJECT_MAPPER.createObjectNode();
+        JsonNode result = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            if (RESULT.equals(field)) {
+                result = readValue(parser);
+                whole = null;
+            } else if (whole != null) {
+                whole.set(field, readValue(parser));
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return result != null ? result : whole;
+    }
+
+    private JsonNode readValue(JsonParser parser) throws IOException {
+        JsonNode value = OBJECT_MAPPER.readTree(parser);
+        return value == null ? NullNode.getInstance() : value;
+    }
+
+    /**
+     * Keeps the first {@link #RAW_TEXT_LIMIT} bytes read through it, so a body no longer than that
+     * can be had again as text. Past the limit it stops keeping them.
+     */
+    private static final class RecordingInputStream extends FilterInputStream {
+        private final List<byte[]> chunks = new ArrayList<>();
+        private int size;
+        private boolean overflowed;
+
+        private RecordingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int next = super.read();
+            if (next != -1) {
+                record(new byte[] {(byte) next}, 0, 1);
+            }
+            return next;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                record(buffer, offset, count);
+            }
+            return count;
+        }
+
+        /**
+         * Returns everything read so far and the rest of the body, as text, or null if the body is
+         * longer than the limit. The rest of the body is read either way.
+         */
+        String readAll(Charset charset) throws IOException {
+            byte[] rest = overflowed ? new byte[0] : in.readNBytes(RAW_TEXT_LIMIT - size + 1);
+            record(rest, 0, rest.length);
+            if (overflowed) {
+                in.transferTo(OutputStream.nullOutputStream());
+                return null;
+            }
+            byte[] body = new byte[size];
+            int position = 0;
+            for (byte[] chunk : chunks) {
+                System.arraycopy(chunk, 0, body, position, chunk.length);
+                position += chunk.length;
+            }
+            return new String(body, charset);
+        }
+
+        private void record(byte[] buffer, int offset, int length) {
+            if (overflowed) {
+                return;
+            }
+            if (size + length > RAW_TEXT_LIMIT) {
+                overflowed = true;
+                chunks.clear();
+                return;
+            }
+            chunks.add(Arrays.copyOfRange(buffer, offset, offset + length));
+            size += length;
+        }
+    }
+
+    private int peekFirstNonWhitespace(BufferedInputStream in) throws IOException {
+        while (true) {
+            in.mark(1);
+            int next = in.read();
+            if (next == -1 || !Character.isWhitespace(next)) {
+                in.reset();
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package org.kgrid.adapter.proxy;
+
+import java.net.URL;
+import org.kgrid.adapter.api.AdapterClientErrorException;
+import org.kgrid.adapter.api.AdapterUnavailableException;
+
+/**
+ * An endpoint activated on one runtime instance, which an executor can send requests to. The load,
+ * circuit breaker and bulkhead belong to the instance and are shared by all of its endpoints.
+ */
+public class RuntimeTarget {
+
+    private final String runtimeId;
+    private final String engine;
+    private final String runtimeUrl;
+    private final URL endpoint;
+    private final RuntimeLoad load;
+    private final CircuitBreaker circuitBreaker;
+    private final Bulkhead bulkhead;
+
+    RuntimeTarget(
+            String engine,
+            String runtimeUrl,
+            URL endpoint,
+            RuntimeLoad load,
+            CircuitBreaker circuitBreaker,
+            Bulkhead bulkhead) {
+        this.runtimeId = RuntimeDescriptor.id(engine, runtimeUrl);
+        this.engine = engine;
+        this.runtimeUrl = runtimeUrl;
+        this.endpoint = endpoint;
+        this.load = load;
+        this.circuitBreaker = circuitBreaker;
+        this.bulkhead = bulkhead;
+    }
+
+    public String getRuntimeId() {
+        return runtimeId;
+    }
+
+    public String getEngine() {
+        return engine;
+    }
+
+    public String getRuntimeUrl() {
+        return runtimeUrl;
+    }
+
+    public URL getEndpoint() {
+        return endpoint;
+    }
+
+    public RuntimeLoad getLoad() {
+        return load;
+    }
+
+    public CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+    public Bulkhead getBulkhead() {
+        return bulkhead;
+    }
+
+    /** Whether the runtime's circuit breaker would refuse a request sent now. */
+    boolean isRefusingCalls() {
+        return circuitBreaker.isRefusingCalls();
+    }
+
+    /**
+     * Claims a place for a request on the runtime and returns its start time for {@link #release}.
+     * Fails at once with an {@link AdapterUnavailableException}, without calling the runtime, if the
+     * runtime is at its concurrency limit or its circuit is open.
+     */
+    long acquire() {
+        if (!bulkhead.tryAcquire()) {
+            throw new AdapterUnavailableException(String.format(
+                    "Remote runtime %s is busy: %d requests are already in progress",
+                    runtimeId, bulkhead.getMaxConcurrentCalls()));
+        }
+        if (!circuitBreaker.tryAcquirePermission()) {
+            bulkhead.release();
+            throw new AdapterUnavailableException(String.format(
+                    "Remote runtime %s is unavailable: its circuit breaker is open after repeated failures",
+                    runtimeId));
+        }
+        return load.start();
+    }
+
+    /** Records the outcome of a request started with {@link #acquire}, with null for success. */
+    void release(long startNanos, Throwable error) {
+        long duration = System.nanoTime() - startNanos;
+        load.finish(startNanos);
+        circuitBreaker.onResult(error != null && !(error instanceof AdapterClientErrorException), duration);
+        bulkhead.release();
+    }
+
+    /**
+     * Ends a request started with {@link #acquire} that was cancelled, without counting it as a
+     * success or a failure.
+     */
+    void cancel(long startNanos) {
+        load.finish(startNanos);
+        circuitBreaker.onCancelled();
+        bulkhead.release();
+    }
+}
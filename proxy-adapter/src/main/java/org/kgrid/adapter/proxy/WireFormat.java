@@ -0,0 +1,101 @@
+package org.kgrid.adapter.proxy;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import org.springframework.http.MediaType;
+
+/**
+ * Binary formats JSON inputs and results can be exchanged with runtimes in. A runtime that lists
+ * {@code "cbor"} or {@code "smile"} under {@code "formats"} in its details is sent JSON request
+ * bodies in that format and asked to answer in it, which spares both sides writing and parsing
+ * JSON text. Results are read back into the same JSON values, so the activator's clients can't
+ * tell the difference. Runtimes that list neither are spoken to in JSON.
+ */
+enum WireFormat {
+    CBOR("cbor", MediaType.valueOf("application/cbor"), new CBORMapper()),
+    SMILE("smile", MediaType.valueOf("application/x-jackson-smile"), new SmileMapper());
+
+    private final String name;
+    private final MediaType mediaType;
+    private final ObjectMapper mapper;
+    private final String accept;
+
+    WireFormat(String name, MediaType mediaType, ObjectMapper mapper) {
+        this.name = name;
+        this.mediaType = mediaType;
+        this.mapper = mapper;
+        this.mapper.getFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+        // a runtime that can't answer in the format may still answer in JSON, or in anything else
+        this.accept = mediaType + ", application/json;q=0.9, */*;q=0.8";
+    }
+
+    /** Reads a comma separated list of format names, ignoring any this enum doesn't have. */
+    static List<WireFormat> parse(String formats) {
+        List<WireFormat> parsed = new ArrayList<>();
+        for (String name : formats.split(",")) {
+            WireFormat format = named(name.trim().toLowerCase(Locale.ROOT));
+            if (format != null && !parsed.contains(format)) {
+                parsed.add(format);
+            }
+        }
+        return parsed;
+    }
+
+    static WireFormat named(String name) {
+        for (WireFormat format : values()) {
+            if (format.name.equals(name)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /** The format of a body with the content type, or null if it isn't one of these formats. */
+    static WireFormat of(MediaType contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        for (WireFormat format : values()) {
+            if (format.mediaType.isCompatibleWith(contentType)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Whether a request body can be sent in a binary format: it must be JSON, and not already
+     * serialized, since turning JSON text into a binary format would cost more than it saves.
+     */
+    static boolean canConvert(Object body, String contentType) {
+        return body != null && !(body instanceof String) && !(body instanceof byte[])
+                && contentType != null && MediaType.valueOf(contentType).isCompatibleWith(MediaType.APPLICATION_JSON);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    MediaType getMediaType() {
+        return mediaType;
+    }
+
+    ObjectMapper getMapper() {
+        return mapper;
+    }
+
+    /** The {@code Accept} header asking the runtime to answer in this format. */
+    String getAccept() {
+        return accept;
+    }
+
+    byte[] write(Object value) throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+}
@@ -0,0 +1,155 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.kgrid.adapter.proxy.ArtifactCache.CachedArtifact;
+
+@DisplayName("Artifact Cache Tests")
+public class ArtifactCacheTest {
+
+  private static final URI WELCOME = URI.create("hello-proxy-v1.0/src/welcome.js");
+  private static final URI GOODBYE = URI.create("hello-proxy-v1.0/src/goodbye.js");
+  private static final URI OTHER = URI.create("hello-proxy-v1.01/src/welcome.js");
+
+  private final AtomicInteger reads = new AtomicInteger();
+
+  @Test
+  @DisplayName("Concurrent requests for an artifact share one read")
+  public void sharesOneRead() throws Exception {
+    ArtifactCache cache = new ArtifactCache(1024, false);
+    CountDownLatch reading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService replicas = Executors.newFixedThreadPool(20);
+    try {
+      List<Future<CachedArtifact>> fetches = new ArrayList<>();
+      for (int i = 0; i < 20; i++) {
+        fetches.add(replicas.submit(() -> cache.get(WELCOME, () -> {
+          reads.incrementAndGet();
+          reading.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new IOException(e);
+          }
+          return bytes("welcome");
+        })));
+      }
+      assertTrue(reading.await(5, TimeUnit.SECONDS));
+      release.countDown();
+      for (Future<CachedArtifact> fetch : fetches) {
+        assertEquals("welcome", text(fetch.get(5, TimeUnit.SECONDS)));
+      }
+    } finally {
+      replicas.shutdownNow();
+    }
+
+    assertEquals(1, reads.get());
+    assertEquals(1L, cache.getStats().get("misses"));
+    assertEquals(19L, cache.getStats().get("hits"));
+  }
+
+  @Test
+  @DisplayName("Least recently used artifacts are evicted to stay within the byte budget")
+  public void evictsLeastRecentlyUsed() throws IOException {
+    ArtifactCache cache = new ArtifactCache(10, false);
+    CachedArtifact welcome = cache.get(WELCOME, () -> bytes("12345"));
+    cache.get(GOODBYE, () -> bytes("67890"));
+    assertSame(welcome, cache.get(WELCOME, () -> bytes("other")));
+
+    cache.get(OTHER, () -> bytes("abcde"));
+
+    assertSame(welcome, cache.get(WELCOME, () -> bytes("other")));
+    assertEquals("fresh", text(cache.get(GOODBYE, () -> bytes("fresh"))));
+    assertEquals(2L, cache.getStats().get("evictions"));
+    assertEquals(10L, cache.getStats().get("bytes"));
+  }
+
+  @Test
+  @DisplayName("Invalidating a KO drops only that KO's artifacts")
+  public void invalidatesKo() throws IOException {
+    ArtifactCache cache = new ArtifactCache(1024, true);
+    cache.get(WELCOME, () -> bytes("welcome"));
+    cache.get(OTHER, () -> bytes("other"));
+
+    cache.invalidate(URI.create("hello-proxy-v1.0"));
+
+    assertEquals("new welcome", text(cache.get(WELCOME, () -> bytes("new welcome"))));
+    assertEquals("other", text(cache.get(OTHER, () -> bytes("changed"))));
+  }
+
+  @Test
+  @DisplayName("A read underway is only kept out of the cache when its own KO is invalidated")
+  public void invalidationOnlyDropsReadsOfThatKo() throws Exception {
+    ArtifactCache cache = new ArtifactCache(1024, false);
+    CountDownLatch reading = new CountDownLatch(2);
+    CountDownLatch release = new CountDownLatch(1);
+    ExecutorService replicas = Executors.newFixedThreadPool(2);
+    try {
+      Future<CachedArtifact> welcome =
+          replicas.submit(() -> cache.get(WELCOME, () -> awaitRelease(reading, release, "old welcome")));
+      Future<CachedArtifact> other =
+          replicas.submit(() -> cache.get(OTHER, () -> awaitRelease(reading, release, "other")));
+      assertTrue(reading.await(5, TimeUnit.SECONDS));
+      cache.invalidate(URI.create("hello-proxy-v1.0"));
+      release.countDown();
+      assertEquals("old welcome", text(welcome.get(5, TimeUnit.SECONDS)));
+      assertEquals("other", text(other.get(5, TimeUnit.SECONDS)));
+    } finally {
+      replicas.shutdownNow();
+    }
+
+    assertEquals("new welcome", text(cache.get(WELCOME, () -> bytes("new welcome"))));
+    assertEquals("other", text(cache.get(OTHER, () -> bytes("changed"))));
+  }
+
+  @Test
+  @DisplayName("Missing and oversized artifacts are not cached")
+  public void skipsMissingAndOversized() throws IOException {
+    ArtifactCache cache = new ArtifactCache(4, false);
+
+    assertNull(cache.get(WELCOME, () -> null));
+    cache.get(GOODBYE, () -> bytes("too big"));
+    cache.get(GOODBYE, () -> bytes("too big"));
+
+    assertEquals(0, cache.getStats().get("entries"));
+    assertEquals(3L, cache.getStats().get("misses"));
+  }
+
+  private byte[] awaitRelease(CountDownLatch reading, CountDownLatch release, String content) throws IOException {
+    reading.countDown();
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      throw new IOException(e);
+    }
+    return bytes(content);
+  }
+
+  private byte[] bytes(String content) {
+    return content.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private String text(CachedArtifact artifact) {
+    ByteBuffer content = artifact.getContent();
+    byte[] bytes = new byte[content.remaining()];
+    content.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
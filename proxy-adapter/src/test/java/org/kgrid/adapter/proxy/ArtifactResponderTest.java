@@ -0,0 +1,191 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.kgrid.adapter.api.ActivationContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@DisplayName("Artifact Responder Tests")
+public class ArtifactResponderTest {
+
+  private static final URI ARTIFACT = URI.create("naan/name/version/src/index.js");
+  private static final String CODE = "function welcome(name) { return 'Welcome, ' + name; }";
+
+  private final ArtifactResponder responder = new ArtifactResponder();
+  private final ActivationContext context = mock(ActivationContext.class);
+  private final ArtifactCache cache = new ArtifactCache(1024, false);
+
+  @TempDir Path shelf;
+
+  @BeforeEach
+  public void setUp() {
+    given(context.getBinary(any(URI.class)))
+        .willAnswer(invocation -> new ByteArrayInputStream(CODE.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  @DisplayName("Artifacts are served with an ETag and length and revalidate to 304")
+  public void servesEtagAndNotModified() throws IOException {
+    MockHttpServletResponse response = respond(get());
+
+    assertEquals(200, response.getStatus());
+    assertEquals(CODE, response.getContentAsString());
+    assertEquals(CODE.length(), response.getContentLength());
+    assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+    String etag = response.getHeader(HttpHeaders.ETAG);
+    assertNotNull(etag);
+
+    MockHttpServletRequest revalidation = get();
+    revalidation.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+    MockHttpServletResponse notModified = respond(revalidation);
+
+    assertEquals(304, notModified.getStatus());
+    assertEquals(0, notModified.getContentAsByteArray().length);
+  }
+
+  @Test
+  @DisplayName("Repeated requests read the artifact from the shelf once")
+  public void readsShelfOnce() throws IOException {
+    respond(get());
+    MockHttpServletResponse response = respond(get());
+
+    assertEquals(CODE, response.getContentAsString());
+    verify(context, times(1)).getBinary(ARTIFACT);
+  }
+
+  @Test
+  @DisplayName("A byte range is served as partial content")
+  public void servesRange() throws IOException {
+    MockHttpServletRequest request = get();
+    request.addHeader(HttpHeaders.RANGE, "bytes=9-15");
+
+    MockHttpServletResponse response = respond(request);
+
+    assertEquals(206, response.getStatus());
+    assertEquals("welcome", response.getContentAsString());
+    assertEquals(7, response.getContentLength());
+    assertEquals("bytes 9-15/" + CODE.length(), response.getHeader(HttpHeaders.CONTENT_RANGE));
+  }
+
+  @Test
+  @DisplayName("A range past the end of the artifact is not satisfiable")
+  public void rejectsUnsatisfiableRange() throws IOException {
+    MockHttpServletRequest request = get();
+    request.addHeader(HttpHeaders.RANGE, "bytes=1000-");
+
+    MockHttpServletResponse response = respond(request);
+
+    assertEquals(416, response.getStatus());
+    assertEquals("bytes */" + CODE.length(), response.getHeader(HttpHeaders.CONTENT_RANGE));
+    assertEquals(0, response.getContentAsByteArray().length);
+  }
+
+  @Test
+  @DisplayName("Artifacts stored as files are sent from the file with Last-Modified")
+  public void servesLocalFile() throws IOException {
+    Path file = Files.write(shelf.resolve("index.js"), CODE.getBytes(StandardCharsets.UTF_8));
+    given(context.getBinaryPath(ARTIFACT)).willReturn(file);
+
+    MockHttpServletResponse response = respond(get());
+
+    assertEquals(200, response.getStatus());
+    assertEquals(CODE, response.getContentAsString());
+    assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED));
+    verify(context, never()).getBinary(any(URI.class));
+
+    MockHttpServletRequest revalidation = get();
+    revalidation.addHeader(HttpHeaders.IF_MODIFIED_SINCE, response.getHeader(HttpHeaders.LAST_MODIFIED));
+    assertEquals(304, respond(revalidation).getStatus());
+  }
+
+  @Test
+  @DisplayName("Files are handed to the container's sendfile when it supports it")
+  public void handsFilesToSendfile() throws IOException {
+    Path file = Files.write(shelf.resolve("index.js"), CODE.getBytes(StandardCharsets.UTF_8));
+    given(context.getBinaryPath(ARTIFACT)).willReturn(file);
+    MockHttpServletRequest request = get();
+    request.setAttribute(ArtifactResponder.SENDFILE_SUPPORT, Boolean.TRUE);
+    request.addHeader(HttpHeaders.RANGE, "bytes=9-");
+
+    MockHttpServletResponse response = respond(request);
+
+    assertEquals(206, response.getStatus());
+    assertArrayEquals(new byte[0], response.getContentAsByteArray());
+    assertEquals(file.toAbsolutePath().toString(), request.getAttribute(ArtifactResponder.SENDFILE_FILENAME));
+    assertEquals(9L, request.getAttribute(ArtifactResponder.SENDFILE_START));
+    assertEquals((long) CODE.length(), request.getAttribute(ArtifactResponder.SENDFILE_END));
+  }
+
+  @Test
+  @DisplayName("Runtimes that accept gzip are sent the cache's gzipped copy, for files too")
+  public void servesGzippedCopy() throws IOException {
+    ArtifactCache compressing = new ArtifactCache(64 * 1024, false, 256);
+    byte[] code = CODE.repeat(20).getBytes(StandardCharsets.UTF_8);
+    given(context.getBinary(ARTIFACT)).willAnswer(invocation -> new ByteArrayInputStream(code));
+    MockHttpServletRequest request = get();
+    request.addHeader(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate");
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    responder.respond(context, compressing, ARTIFACT, request, response);
+
+    assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertEquals(HttpHeaders.ACCEPT_ENCODING, response.getHeader(HttpHeaders.VARY));
+    assertTrue(response.getContentLength() < code.length);
+    assertArrayEquals(code, new GZIPInputStream(
+        new ByteArrayInputStream(response.getContentAsByteArray())).readAllBytes());
+    assertTrue(response.getHeader(HttpHeaders.ETAG).endsWith("-gzip\""));
+
+    MockHttpServletResponse identity = new MockHttpServletResponse();
+    responder.respond(context, compressing, ARTIFACT, get(), identity);
+    assertNull(identity.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(code, identity.getContentAsByteArray());
+
+    Path file = Files.write(shelf.resolve("index.js"), code);
+    given(context.getBinaryPath(ARTIFACT)).willReturn(file);
+    MockHttpServletResponse fromFile = new MockHttpServletResponse();
+    responder.respond(context, compressing, ARTIFACT, request, fromFile);
+    MockHttpServletResponse fromCache = new MockHttpServletResponse();
+    responder.respond(context, compressing, ARTIFACT, request, fromCache);
+
+    assertEquals("gzip", fromFile.getHeader(HttpHeaders.CONTENT_ENCODING));
+    assertArrayEquals(code, new GZIPInputStream(
+        new ByteArrayInputStream(fromFile.getContentAsByteArray())).readAllBytes());
+    assertArrayEquals(fromFile.getContentAsByteArray(), fromCache.getContentAsByteArray());
+    // the file is read and compressed once, then served from the cache
+    assertEquals(2L, compressing.getStats().get("misses"));
+    assertEquals(2L, compressing.getStats().get("hits"));
+  }
+
+  private MockHttpServletRequest get() {
+    return new MockHttpServletRequest("GET", "/proxy/artifacts/" + ARTIFACT);
+  }
+
+  private MockHttpServletResponse respond(MockHttpServletRequest request) throws IOException {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    responder.respond(context, cache, ARTIFACT, request, response);
+    return response;
+  }
+}
@@ -0,0 +1,142 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URL;
+import java.time.Duration;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.kgrid.adapter.api.AdapterClientErrorException;
+import org.kgrid.adapter.api.AdapterServerErrorException;
+
+@DisplayName("Circuit Breaker Tests")
+public class CircuitBreakerTest {
+
+  private static final long FAST = Duration.ofMillis(1).toNanos();
+  private static final long SLOW = Duration.ofSeconds(2).toNanos();
+
+  @Test
+  @DisplayName("The breaker opens when the failure rate reaches the threshold")
+  public void opensOnFailureRate() {
+    CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+    record(breaker, false, FAST);
+    record(breaker, true, FAST);
+    record(breaker, false, FAST);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    record(breaker, true, FAST);
+
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    assertFalse(breaker.tryAcquirePermission());
+    assertTrue(breaker.isRefusingCalls());
+    assertEquals(1L, breaker.getStats().get("rejected"));
+  }
+
+  @Test
+  @DisplayName("The breaker opens when too many calls are slow")
+  public void opensOnSlowCallRate() {
+    CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+
+    for (int i = 0; i < 3; i++) {
+      record(breaker, false, SLOW);
+    }
+    record(breaker, false, FAST);
+
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+  }
+
+  @Test
+  @DisplayName("After the open duration probes close the breaker if they succeed and reopen it if not")
+  public void probesWhenHalfOpen() throws InterruptedException {
+    CircuitBreaker breaker = breaker(Duration.ofMillis(1));
+    for (int i = 0; i < 4; i++) {
+      record(breaker, true, FAST);
+    }
+    Thread.sleep(5);
+
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertTrue(breaker.tryAcquirePermission());
+    assertTrue(breaker.tryAcquirePermission());
+    assertFalse(breaker.tryAcquirePermission());
+    breaker.onResult(false, FAST);
+    breaker.onResult(true, FAST);
+    assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    Thread.sleep(5);
+    record(breaker, false, FAST);
+    record(breaker, false, FAST);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    assertEquals(0, breaker.getStats().get("calls"));
+  }
+
+  @Test
+  @DisplayName("Targets refuse requests over the bulkhead limit and count client errors as successes")
+  public void targetsApplyBulkheadAndBreaker() throws Exception {
+    CircuitBreaker breaker = breaker(Duration.ofMinutes(1));
+    RuntimeTarget target = new RuntimeTarget(
+        "node",
+        "http://localhost:3000",
+        new URL("http://localhost:3000/welcome"),
+        new RuntimeLoad(),
+        breaker,
+        new Bulkhead(1));
+
+    long start = target.acquire();
+    assertThrows(AdapterServerErrorException.class, target::acquire);
+    target.release(start, new AdapterClientErrorException("Bad input"));
+    for (int i = 0; i < 3; i++) {
+      target.release(target.acquire(), new AdapterClientErrorException("Bad input"));
+    }
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    for (int i = 0; i < 2; i++) {
+      target.release(target.acquire(), new AdapterServerErrorException("Runtime failed"));
+    }
+    AdapterServerErrorException refused = assertThrows(AdapterServerErrorException.class, target::acquire);
+    assertTrue(refused.getMessage().contains("circuit breaker is open"));
+    assertEquals(0, target.getLoad().getOutstanding());
+    assertEquals(1, target.getBulkhead().getStats().get("availableCalls"));
+  }
+
+  @Test
+  @DisplayName("Cancelled calls are not recorded and give a half-open breaker its probe back")
+  public void cancelledCallsAreNotRecorded() throws Exception {
+    CircuitBreaker breaker = breaker(Duration.ofMillis(1));
+    RuntimeTarget target = new RuntimeTarget(
+        "node",
+        "http://localhost:3000",
+        new URL("http://localhost:3000/welcome"),
+        new RuntimeLoad(),
+        breaker,
+        new Bulkhead(1));
+    target.cancel(target.acquire());
+    assertEquals(0, breaker.getStats().get("calls"));
+    assertEquals(1, target.getBulkhead().getStats().get("availableCalls"));
+
+    for (int i = 0; i < 4; i++) {
+      record(breaker, true, FAST);
+    }
+    Thread.sleep(5);
+    assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    assertTrue(breaker.tryAcquirePermission());
+    assertTrue(breaker.tryAcquirePermission());
+    assertFalse(breaker.tryAcquirePermission());
+    breaker.onCancelled();
+    breaker.onResult(false, FAST);
+    record(breaker, false, FAST);
+    assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+  }
+
+  private CircuitBreaker breaker(Duration openDuration) {
+    return new CircuitBreaker(
+        new CircuitBreaker.Config(50, 75, Duration.ofSeconds(1), 4, 4, openDuration, 2));
+  }
+
+  private void record(CircuitBreaker breaker, boolean failed, long durationNanos) {
+    assertTrue(breaker.tryAcquirePermission());
+    breaker.onResult(failed, durationNanos);
+  }
+}
@@ -0,0 +1,30 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Map;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.info.Info;
+
+@DisplayName("Connection Pool Info Contributor Tests")
+public class ConnectionPoolInfoContributorTest {
+
+  @Test
+  @DisplayName("Contributes pool occupancy to actuator info")
+  public void contributesPoolStats() {
+    PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+    connectionManager.setMaxTotal(42);
+    ConnectionPoolInfoContributor contributor = new ConnectionPoolInfoContributor();
+    contributor.proxyConnectionManager = connectionManager;
+
+    Info.Builder builder = new Info.Builder();
+    contributor.contribute(builder);
+
+    Map<?, ?> stats = (Map<?, ?>) builder.build().get("runtimeConnectionPool");
+    assertEquals(42, stats.get("max"));
+    assertEquals(0, stats.get("leased"));
+    assertEquals(Map.of(), stats.get("runtimes"));
+  }
+}
@@ -0,0 +1,85 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Dispatch Strategy Tests")
+public class DispatchStrategyTest {
+
+  private RuntimeTarget first;
+  private RuntimeTarget second;
+  private RuntimeTarget third;
+  private List<RuntimeTarget> targets;
+
+  @BeforeEach
+  public void setUp() throws MalformedURLException {
+    first = target("http://runtime-1.com");
+    second = target("http://runtime-2.com");
+    third = target("http://runtime-3.com");
+    targets = List.of(first, second, third);
+  }
+
+  @Test
+  @DisplayName("Round robin takes each runtime in turn")
+  public void roundRobinTakesTurns() {
+    DispatchStrategy strategy = DispatchStrategy.named(DispatchStrategy.ROUND_ROBIN);
+
+    assertEquals(
+        List.of(first, second, third, first),
+        List.of(
+            strategy.choose(targets),
+            strategy.choose(targets),
+            strategy.choose(targets),
+            strategy.choose(targets)));
+  }
+
+  @Test
+  @DisplayName("Least outstanding takes the runtime with the fewest requests in progress")
+  public void leastOutstandingAvoidsBusyRuntimes() {
+    first.getLoad().start();
+    first.getLoad().start();
+    third.getLoad().start();
+
+    assertSame(second, DispatchStrategy.named(DispatchStrategy.LEAST_OUTSTANDING).choose(targets));
+  }
+
+  @Test
+  @DisplayName("EWMA takes the runtime that has been answering fastest")
+  public void ewmaPrefersFastRuntimes() throws InterruptedException {
+    finishAfter(first, 20);
+    finishAfter(second, 1);
+    finishAfter(third, 20);
+
+    assertSame(second, DispatchStrategy.named(DispatchStrategy.EWMA).choose(targets));
+
+    for (int i = 0; i < 100; i++) {
+      second.getLoad().start();
+    }
+
+    assertNotSame(second, DispatchStrategy.named(DispatchStrategy.EWMA).choose(targets));
+  }
+
+  private void finishAfter(RuntimeTarget target, long millis) throws InterruptedException {
+    long start = target.getLoad().start();
+    Thread.sleep(millis);
+    target.getLoad().finish(start);
+  }
+
+  private RuntimeTarget target(String url) throws MalformedURLException {
+    return new RuntimeTarget(
+        "node",
+        url,
+        new URL(url + "/welcome"),
+        new RuntimeLoad(),
+        new CircuitBreaker(new ProxyState().circuitBreakerConfig),
+        new Bulkhead(0));
+  }
+}
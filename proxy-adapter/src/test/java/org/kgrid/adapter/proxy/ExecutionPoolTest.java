@@ -0,0 +1,73 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.kgrid.adapter.api.AdapterUnavailableException;
+
+@DisplayName("Execution Pool Tests")
+public class ExecutionPoolTest {
+
+  private final ExecutionPool pool = new ExecutionPool(1, 1, false);
+  private final CountDownLatch release = new CountDownLatch(1);
+
+  @AfterEach
+  public void tearDown() {
+    release.countDown();
+    pool.shutdown();
+  }
+
+  @Test
+  @DisplayName("Calls run on the pool's threads and their results complete the future")
+  public void runsCallsOffTheCallersThread() {
+    Thread caller = Thread.currentThread();
+
+    Thread worker = pool.submit(Thread::currentThread).join();
+
+    assertNotEquals(caller, worker);
+    assertTrue(worker.getName().startsWith("proxy-execution-"));
+    assertTrue(worker.isDaemon());
+  }
+
+  @Test
+  @DisplayName("Calls beyond the running and queued limits are refused as unavailable")
+  public void refusesCallsWhenSaturated() throws Exception {
+    CountDownLatch started = new CountDownLatch(1);
+    CompletableFuture<String> running = pool.submit(() -> {
+      started.countDown();
+      await(release);
+      return "first";
+    });
+    started.await(5, TimeUnit.SECONDS);
+    CompletableFuture<String> queued = pool.submit(() -> "second");
+
+    CompletionException refused =
+        assertThrows(CompletionException.class, () -> pool.submit(() -> "third").join());
+    assertEquals(AdapterUnavailableException.class, refused.getCause().getClass());
+    assertEquals(1, pool.getStats().get("active"));
+    assertEquals(1, pool.getStats().get("queued"));
+    assertEquals(1L, pool.getStats().get("rejected"));
+
+    release.countDown();
+    assertEquals("first", running.get(5, TimeUnit.SECONDS));
+    assertEquals("second", queued.get(5, TimeUnit.SECONDS));
+    assertEquals("third", pool.submit(() -> "third").get(5, TimeUnit.SECONDS));
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
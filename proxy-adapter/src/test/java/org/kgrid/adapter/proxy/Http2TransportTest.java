@@ -0,0 +1,146 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.HttpServerErrorException;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.server.HttpServer;
+
+@DisplayName("HTTP/2 Transport Tests")
+public class Http2TransportTest {
+
+  private final Set<String> connections = ConcurrentHashMap.newKeySet();
+  private final Http2Transport transport = new Http2Transport(Duration.ofSeconds(5), Duration.ofSeconds(10));
+  private DisposableServer runtime;
+  private URI endpoint;
+
+  @BeforeEach
+  public void setUp() {
+    runtime = HttpServer.create()
+        .host("127.0.0.1")
+        .port(0)
+        .protocol(HttpProtocol.H2C, HttpProtocol.HTTP11)
+        .route(routes -> routes
+            .post("/welcome", (request, response) -> {
+              request.withConnection(connection -> connections.add(
+                  connection.channel().parent().id().asLongText()));
+              return response
+                  .header("Content-Type", "application/json")
+                  .sendString(request.receive().aggregate().asString()
+                      .map(name -> "{\"result\":\"Welcome " + name + "\"}"));
+            })
+            .post("/inflate", (request, response) -> {
+              // decodes the request body and answers with it gzipped
+              String encoding = request.requestHeaders().get("Content-Encoding");
+              return response
+                  .header("Content-Type", "text/plain")
+                  .header("Content-Encoding", "gzip")
+                  .sendByteArray(request.receive().aggregate().asInputStream().map(body -> {
+                    try (InputStream decoded = Compression.decoding(body, encoding)) {
+                      return Compression.encode(
+                          (encoding + " " + new String(decoded.readAllBytes(), StandardCharsets.UTF_8))
+                              .getBytes(StandardCharsets.UTF_8),
+                          "gzip");
+                    } catch (IOException e) {
+                      throw new UncheckedIOException(e);
+                    }
+                  }));
+            })
+            .post("/fail", (request, response) -> response.status(503).sendString(
+                request.receive().aggregate().asString().map(body -> "Runtime is busy"))))
+        .bindNow();
+    endpoint = URI.create("http://127.0.0.1:" + runtime.port() + "/welcome");
+  }
+
+  @AfterEach
+  public void tearDown() {
+    runtime.disposeNow();
+  }
+
+  @Test
+  @DisplayName("Concurrent requests to an h2c runtime share one HTTP/2 connection")
+  public void multiplexesRequestsOverOneConnection() throws Exception {
+    HttpResponse<InputStream> first =
+        transport.send(endpoint, headers(null), HttpRequest.BodyPublishers.ofString("Bob"));
+    assertEquals(HttpClient.Version.HTTP_2, first.version());
+    try (InputStream body = first.body()) {
+      assertEquals("{\"result\":\"Welcome Bob\"}", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      responses.add(transport.sendAsync(endpoint, headers(null), ("Ann" + i).getBytes(StandardCharsets.UTF_8)));
+    }
+    for (int i = 0; i < 20; i++) {
+      HttpResponse<byte[]> response = responses.get(i).join();
+      assertEquals(HttpClient.Version.HTTP_2, response.version());
+      assertEquals("{\"result\":\"Welcome Ann" + i + "\"}", new String(response.body(), StandardCharsets.UTF_8));
+    }
+    assertEquals(1, connections.size());
+  }
+
+  @Test
+  @DisplayName("Request bodies are sent compressed and compressed responses are decoded")
+  public void compressesBodies() throws Exception {
+    URI inflate = endpoint.resolve("/inflate");
+    byte[] body = "Bob".repeat(1000).getBytes(StandardCharsets.UTF_8);
+
+    HttpResponse<InputStream> response = transport.send(inflate, headers("gzip"),
+        HttpRequest.BodyPublishers.ofByteArray(Compression.encode(body, "gzip")));
+    assertEquals("gzip", response.headers().firstValue("Content-Encoding").orElse(null));
+    try (InputStream result = response.body()) {
+      assertEquals("gzip " + "Bob".repeat(1000), new String(result.readAllBytes(), StandardCharsets.UTF_8));
+    }
+
+    HttpResponse<byte[]> asyncResponse =
+        transport.sendAsync(inflate, headers("deflate"), Compression.encode(body, "deflate")).join();
+    assertEquals("deflate " + "Bob".repeat(1000), new String(asyncResponse.body(), StandardCharsets.UTF_8));
+  }
+
+  @Test
+  @DisplayName("Error statuses are thrown as the exceptions RestTemplate throws")
+  public void throwsRestTemplateExceptions() {
+    URI failing = endpoint.resolve("/fail");
+
+    HttpServerErrorException error = assertThrows(HttpServerErrorException.class,
+        () -> transport.send(failing, headers(null), HttpRequest.BodyPublishers.ofString("Bob")));
+    assertEquals(503, error.getRawStatusCode());
+    assertEquals("Runtime is busy", error.getResponseBodyAsString());
+
+    CompletionException asyncError = assertThrows(CompletionException.class,
+        () -> transport.sendAsync(failing, headers(null), new byte[0]).join());
+    assertEquals(HttpServerErrorException.ServiceUnavailable.class, asyncError.getCause().getClass());
+  }
+
+  private HttpHeaders headers(String contentEncoding) {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.TEXT_PLAIN);
+    if (contentEncoding != null) {
+      headers.set(HttpHeaders.CONTENT_ENCODING, contentEncoding);
+    }
+    return headers;
+  }
+}
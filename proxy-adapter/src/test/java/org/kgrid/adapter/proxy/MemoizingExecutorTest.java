@@ -0,0 +1,201 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.kgrid.adapter.api.AdapterServerErrorException;
+import org.kgrid.adapter.api.ClientRequest;
+import org.kgrid.adapter.api.Executor;
+import org.kgrid.adapter.api.ExecutorResponse;
+
+@DisplayName("Memoizing Executor Tests")
+public class MemoizingExecutorTest {
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final AtomicInteger calls = new AtomicInteger();
+  private final Executor runtime =
+      new Executor() {
+        @Override
+        public ExecutorResponse execute(ClientRequest request) {
+          calls.incrementAndGet();
+          if (request.isStreaming()) {
+            return new ExecutorResponse(request.getBodyStream(), new HashMap<>(), request);
+          }
+          if (request.getBody() instanceof JsonNode && ((JsonNode) request.getBody()).has("fail")) {
+            throw new AdapterServerErrorException("Runtime failed");
+          }
+          ObjectNode result = mapper.createObjectNode().put("call", calls.get());
+          return new ExecutorResponse(result, new HashMap<>(), request);
+        }
+      };
+
+  @Test
+  @DisplayName("Deployment specs without a cache are not memoized")
+  public void wrapsOnlyWhenSpecAsksForCache() throws Exception {
+    assertSame(runtime, MemoizingExecutor.fromSpec(runtime, mapper.readTree("{\"engine\":\"node\"}")));
+    assertEquals(
+        MemoizingExecutor.class,
+        MemoizingExecutor.fromSpec(runtime, mapper.readTree("{\"cache\":{\"ttl\":1000}}")).getClass());
+  }
+
+  @Test
+  @DisplayName("Repeat requests with the same json in any key order are served from the cache")
+  public void servesRepeatRequests() throws Exception {
+    MemoizingExecutor executor = new MemoizingExecutor(runtime, null, 10);
+
+    ExecutorResponse first = executor.execute(request("{\"weight\":70,\"height\":1.8}"));
+    ExecutorResponse second = executor.execute(request("{\"height\":1.8,\"weight\":70}"));
+    ExecutorResponse other = executor.execute(request("{\"height\":1.8,\"weight\":80}"));
+
+    assertEquals(1, ((JsonNode) first.getBody()).get("call").asInt());
+    assertEquals(first.getBody(), second.getBody());
+    assertNotSame(first.getBody(), second.getBody());
+    assertEquals(2, ((JsonNode) other.getBody()).get("call").asInt());
+    assertEquals(2, calls.get());
+    Map<String, Object> stats = executor.getStats();
+    assertEquals(1L, stats.get("hits"));
+    assertEquals(2L, stats.get("misses"));
+  }
+
+  @Test
+  @DisplayName("Json sent as a string is matched in any key order and other strings byte for byte")
+  public void canonicalizesJsonStrings() {
+    MemoizingExecutor executor = new MemoizingExecutor(runtime, null, 10);
+
+    executor.execute(stringRequest("{\"a\":1,\"b\":2}", "application/json"));
+    executor.execute(stringRequest("{\"b\":2, \"a\":1}", "application/json"));
+    assertEquals(1, calls.get());
+
+    executor.execute(stringRequest("{\"a\":1,\"b\":2} {", "application/json"));
+    executor.execute(stringRequest("{\"b\":2, \"a\":1}", "text/plain"));
+    assertEquals(3, calls.get());
+  }
+
+  @Test
+  @DisplayName("Requests with streaming bodies are passed through and not cached")
+  public void passesStreamingRequestsThrough() {
+    MemoizingExecutor executor = new MemoizingExecutor(runtime, null, 10);
+
+    for (int i = 0; i < 2; i++) {
+      InputStream input = new ByteArrayInputStream(new byte[] {1, 2, 3});
+      ExecutorResponse response = executor.execute(new ClientRequest.Builder()
+          .body(input)
+          .headers(Map.of("content-type", List.of("application/octet-stream")))
+          .build());
+      assertTrue(response.isStreaming());
+      assertSame(input, response.getBody());
+    }
+
+    assertEquals(2, calls.get());
+    assertEquals(0, executor.getStats().get("entries"));
+  }
+
+  @Test
+  @DisplayName("Cached results expire after the ttl and the oldest are evicted when full")
+  public void expiresAndEvicts() throws Exception {
+    MemoizingExecutor expiring = new MemoizingExecutor(runtime, Duration.ofMillis(1), 10);
+    expiring.execute(request("{\"a\":1}"));
+    Thread.sleep(5);
+    expiring.execute(request("{\"a\":1}"));
+    assertEquals(2, calls.get());
+    assertEquals(1L, expiring.getStats().get("expirations"));
+
+    MemoizingExecutor bounded = new MemoizingExecutor(runtime, null, 2);
+    bounded.execute(request("{\"a\":1}"));
+    bounded.execute(request("{\"a\":2}"));
+    bounded.execute(request("{\"a\":3}"));
+    bounded.execute(request("{\"a\":1}"));
+    assertEquals(2L, bounded.getStats().get("evictions"));
+    assertEquals(6, calls.get());
+  }
+
+  @Test
+  @DisplayName("Failures are not cached and invalidation forgets results")
+  public void skipsFailuresAndInvalidates() throws Exception {
+    MemoizingExecutor executor = new MemoizingExecutor(runtime, null, 10);
+
+    assertThrows(AdapterServerErrorException.class, () -> executor.execute(request("{\"fail\":true}")));
+    assertThrows(AdapterServerErrorException.class, () -> executor.execute(request("{\"fail\":true}")));
+    executor.execute(request("{\"a\":1}"));
+    executor.invalidate();
+    executor.execute(request("{\"a\":1}"));
+
+    assertEquals(4, calls.get());
+  }
+
+  @Test
+  @DisplayName("A result that arrives after invalidation is not stored")
+  public void dropsResultFetchedBeforeInvalidation() throws Exception {
+    CompletableFuture<ExecutorResponse> slow = new CompletableFuture<>();
+    Executor asyncRuntime = new Executor() {
+      @Override
+      public ExecutorResponse execute(ClientRequest request) {
+        return runtime.execute(request);
+      }
+
+      @Override
+      public CompletionStage<ExecutorResponse> executeAsync(ClientRequest request) {
+        calls.incrementAndGet();
+        return slow;
+      }
+    };
+    MemoizingExecutor executor = new MemoizingExecutor(asyncRuntime, null, 10);
+
+    CompletionStage<ExecutorResponse> inFlight = executor.executeAsync(request("{\"a\":1}"));
+    executor.invalidate();
+    slow.complete(new ExecutorResponse(mapper.createObjectNode().put("stale", true), new HashMap<>(), null));
+    inFlight.toCompletableFuture().join();
+
+    assertEquals(0, executor.getStats().get("entries"));
+  }
+
+  @Test
+  @DisplayName("Batches only send uncached requests to the runtime")
+  public void batchesSendOnlyUncached() throws Exception {
+    MemoizingExecutor executor = new MemoizingExecutor(runtime, null, 10);
+    executor.execute(request("{\"a\":1}"));
+
+    List<ExecutorResponse> responses =
+        executor.executeBatch(List.of(request("{\"a\":2}"), request("{\"a\":1}")));
+
+    assertEquals(2, ((JsonNode) responses.get(0).getBody()).get("call").asInt());
+    assertEquals(1, ((JsonNode) responses.get(1).getBody()).get("call").asInt());
+    assertEquals(2, calls.get());
+  }
+
+  private ClientRequest request(String json) throws Exception {
+    return new ClientRequest.Builder()
+        .body(mapper.readTree(json))
+        .headers(Map.of("content-type", List.of("application/json")))
+        .url(URI.create("hello/world/v1.0/welcome"))
+        .httpMethod("POST")
+        .build();
+  }
+
+  private ClientRequest stringRequest(String body, String contentType) {
+    return new ClientRequest.Builder()
+        .body(body)
+        .headers(Map.of("content-type", List.of(contentType)))
+        .url(URI.create("hello/world/v1.0/welcome"))
+        .httpMethod("POST")
+        .build();
+  }
+}
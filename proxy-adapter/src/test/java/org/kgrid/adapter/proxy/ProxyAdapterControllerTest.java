@@ -6,19 +6,22 @@ import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.mock;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.net.URI;
+import java.util.Collections;
 import javax.servlet.http.HttpServletRequest;
 
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.kgrid.adapter.api.ActivationContext;
+import org.springframework.mock.web.MockHttpServletResponse;
 
 @DisplayName("Proxy Adapter Controller Tests")
 public class ProxyAdapterControllerTest {
 
   @Test
   @DisplayName("Get code artifact returns binary")
-  public void testGetCodeArtifactHandlesActualNameIsProxy() {
+  public void testGetCodeArtifactHandlesActualNameIsProxy() throws IOException {
     HttpServletRequest req = mock(HttpServletRequest.class);
     ActivationContext ctx = mock(ActivationContext.class);
     ProxyAdapter adapter = new ProxyAdapter();
@@ -28,12 +31,13 @@ public class ProxyAdapterControllerTest {
     given(req.getRequestURI())
         .willReturn("/proxy/artifacts/proxy/name/version/src/index.js")
         .willReturn("/proxy/artifacts/naan/name/version/src/index.js");
+    given(req.getHeaders(any())).willAnswer(invocation -> Collections.emptyEnumeration());
 
-    adapter.getCodeArtifact(req);
+    adapter.getCodeArtifact(req, new MockHttpServletResponse());
 
     then(ctx).should().getBinary(URI.create("proxy/name/version/src/index.js"));
 
-    adapter.getCodeArtifact(req);
+    adapter.getCodeArtifact(req, new MockHttpServletResponse());
 
     then(ctx).should().getBinary(URI.create("naan/name/version/src/index.js"));
   }
@@ -5,28 +5,56 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.kgrid.adapter.api.*;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.stubbing.Answer;
+import org.mockito.stubbing.OngoingStubbing;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.*;
 import org.springframework.mock.env.MockEnvironment;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
 import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.DefaultResponseErrorHandler;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RequestCallback;
+import org.springframework.web.client.ResponseExtractor;
 import org.springframework.web.client.RestTemplate;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -42,8 +70,12 @@ public class ProxyAdapterTest {
   @Mock
   RestTemplate restTemplate;
 
+  @Mock
+  RequestCallback executionCallback;
+
   private static final String REMOTE_RUNTIME_URL = "http://remote-runtime.com";
   private static final String PROXY_SHELF_URL = "http://proxy-adapter.com";
+  private static final String SECOND_RUNTIME_URL = "http://second-runtime.com";
   private static final String NAAN = "hello";
   private static final String NAME = "proxy";
   private static final String API_VERSION = "v1.0";
@@ -68,6 +100,7 @@ public class ProxyAdapterTest {
   private final JsonNode input = mapper.createObjectNode().put("name", "test");
   private final HttpHeaders headers = new HttpHeaders();
   private final MockHttpServletRequest mockHttpServletRequest = new MockHttpServletRequest();
+  private final AtomicInteger binaryReads = new AtomicInteger();
 
   @BeforeEach
   public void setUp() throws JsonProcessingException {
@@ -83,6 +116,7 @@ public class ProxyAdapterTest {
 
           @Override
           public InputStream getBinary(URI pathToBinary) {
+            binaryReads.incrementAndGet();
             InputStream code;
             try {
               code = helloWorldCode.getInputStream();
@@ -166,11 +200,7 @@ public class ProxyAdapterTest {
   public void testExecuteRemoteObject_whenStringIsReturned() {
     Executor activatedHello = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
 
-    when(restTemplate.postForObject(
-            PROXY_SHELF_URL + "/" + REMOTE_URL_HASH,
-            new HttpEntity<>(input, headers),
-            String.class))
-        .thenReturn(RUNTIME_EXECUTE_RESPONSE);
+    whenRuntimeExecutes().thenAnswer(runtimeResponds(RUNTIME_EXECUTE_RESPONSE));
     String result = (String) activatedHello.execute(input, TYPE_JSON);
     assertAll(
         () -> assertNotNull(activatedHello), () -> assertEquals(RUNTIME_EXECUTE_RESPONSE, result));
@@ -179,11 +209,7 @@ public class ProxyAdapterTest {
   @Test
   @DisplayName("Execute remote object gets result json")
   public void testExecuteRemoteObject_whenJsonIsReturned_WithResult() {
-    when(restTemplate.postForObject(
-            PROXY_SHELF_URL + "/" + REMOTE_URL_HASH,
-            new HttpEntity<>(input, headers),
-            String.class))
-        .thenReturn("{\"result\":\"" + RUNTIME_EXECUTE_RESPONSE + "\"}");
+    whenRuntimeExecutes().thenAnswer(runtimeResponds("{\"result\":\"" + RUNTIME_EXECUTE_RESPONSE + "\"}"));
     Executor activatedHello = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
     JsonNode result = (JsonNode) activatedHello.execute(input, TYPE_JSON);
     assertEquals(RUNTIME_EXECUTE_RESPONSE, result.asText());
@@ -193,11 +219,7 @@ public class ProxyAdapterTest {
   @DisplayName("Execute remote object only receives json object")
   public void testExecuteRemoteObject_whenJsonIsReturned_WithNoResult() {
     String returnedJson = "{\"somethingElse\":\"" + RUNTIME_EXECUTE_RESPONSE + "\"}";
-    when(restTemplate.postForObject(
-            PROXY_SHELF_URL + "/" + REMOTE_URL_HASH,
-            new HttpEntity<>(input, headers),
-            String.class))
-        .thenReturn(returnedJson);
+    whenRuntimeExecutes().thenAnswer(runtimeResponds(returnedJson));
     Executor activatedHello = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
     JsonNode result = (JsonNode) activatedHello.execute(input, TYPE_JSON);
     assertEquals(returnedJson, result.toString());
@@ -206,11 +228,7 @@ public class ProxyAdapterTest {
   @Test
   @DisplayName("Execute remote object handles client error")
   public void testExecuteRemoteObject_ThrowsAdapterClientErrorException() {
-    when(restTemplate.postForObject(
-            PROXY_SHELF_URL + "/" + REMOTE_URL_HASH,
-            new HttpEntity<>(input, headers),
-            String.class))
-        .thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST, ERROR_MESSAGE));
+    whenRuntimeExecutes().thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST, ERROR_MESSAGE));
     Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
 
     AdapterClientErrorException exception =
@@ -222,14 +240,167 @@ public class ProxyAdapterTest {
     assertEquals("400 " + ERROR_MESSAGE, exception.getMessage());
   }
 
+  @Test
+  @DisplayName("Execution fails fast once a failing runtime's circuit opens, and the runtime is reported unavailable")
+  public void testExecuteFailsFast_WhenCircuitOpens() {
+    state().circuitBreakerConfig =
+        new CircuitBreaker.Config(50, 100, Duration.ofSeconds(10), 2, 2, Duration.ofMinutes(1), 1);
+    whenRuntimeExecutes().thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, ERROR_MESSAGE));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    String contentType = Objects.requireNonNull(headers.getContentType()).toString();
+
+    assertThrows(AdapterServerErrorException.class, () -> executor.execute(input, contentType));
+    assertThrows(AdapterServerErrorException.class, () -> executor.execute(input, contentType));
+    AdapterServerErrorException refused =
+        assertThrows(AdapterServerErrorException.class, () -> executor.execute(input, contentType));
+
+    assertTrue(refused.getMessage().contains("circuit breaker is open"));
+    Mockito.verify(restTemplate, Mockito.times(2))
+        .execute(anyString(), any(), any(), any(ResponseExtractor.class));
+    ObjectNode runtime = proxyAdapter.getRuntimeDetails(NODE_ENGINE);
+    assertEquals("unavailable", runtime.get("status").asText());
+    assertEquals("open", runtime.at("/circuit/state").asText());
+  }
+
+  @Test
+  @DisplayName("Endpoints whose spec asks for retries retry a server error")
+  public void testExecuteRetriesServerError_WhenSpecAsksForRetries() {
+    deploymentDesc.putObject("retry").put("maxAttempts", 2);
+    activationRequestBody.set("retry", deploymentDesc.get("retry"));
+    whenRuntimeExecutes()
+        .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, ERROR_MESSAGE))
+        .thenAnswer(runtimeResponds(RUNTIME_EXECUTE_RESPONSE));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    assertEquals(RUNTIME_EXECUTE_RESPONSE, executor.execute(input, TYPE_JSON));
+    Mockito.verify(restTemplate, Mockito.times(2))
+        .execute(anyString(), any(), any(), any(ResponseExtractor.class));
+    assertEquals(1L, proxyAdapter.getRetryBudgetStats().get("retries"));
+  }
+
+  @Test
+  @DisplayName("Streaming request bodies are piped to the runtime and its response is piped back")
+  public void testExecuteStreamsRequestAndResponse() throws IOException {
+    MockClientHttpRequest runtimeRequest = new MockClientHttpRequest();
+    MockClientHttpResponse runtimeResponse =
+        new MockClientHttpResponse(RUNTIME_EXECUTE_RESPONSE.getBytes(), HttpStatus.OK);
+    runtimeResponse.getHeaders().setContentType(MediaType.TEXT_PLAIN);
+    runtimeRequest.setResponse(runtimeResponse);
+    when(restTemplate.getRequestFactory()).thenReturn((uri, method) -> {
+      runtimeRequest.setURI(uri);
+      return runtimeRequest;
+    });
+    when(restTemplate.getErrorHandler()).thenReturn(new DefaultResponseErrorHandler());
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    ExecutorResponse response = executor.execute(new ClientRequest.Builder()
+        .body(new ByteArrayInputStream("large input".getBytes()))
+        .headers(Map.of("content-type", List.of("application/octet-stream")))
+        .url(ENDPOINT_URI)
+        .httpMethod("POST")
+        .build());
+
+    assertEquals(URI.create(PROXY_SHELF_URL + "/" + REMOTE_URL_HASH), runtimeRequest.getURI());
+    assertEquals("large input", runtimeRequest.getBodyAsString());
+    assertEquals(MediaType.APPLICATION_OCTET_STREAM, runtimeRequest.getHeaders().getContentType());
+    assertTrue(response.isStreaming());
+    assertEquals(List.of("text/plain"), response.getHeaders().get("content-type"));
+    try (InputStream body = response.getBodyStream()) {
+      assertEquals(RUNTIME_EXECUTE_RESPONSE, new String(body.readAllBytes()));
+    }
+    Mockito.verify(restTemplate, Mockito.never())
+        .execute(anyString(), any(), any(), any(ResponseExtractor.class));
+  }
+
+  @Test
+  @DisplayName("Large request bodies are gzipped for runtimes that accept gzip request bodies")
+  public void testExecuteCompressesRequestBodies() throws IOException {
+    when(restTemplate.getForEntity(REMOTE_RUNTIME_URL + "/info", JsonNode.class))
+        .thenReturn(new ResponseEntity<>(((ObjectNode) infoResponseBody.deepCopy())
+            .<JsonNode>set("requestEncodings", mapper.createArrayNode().add("gzip")), HttpStatus.OK));
+    JsonNode largeInput = mapper.createObjectNode().put("name", "test".repeat(1000));
+    byte[] body = mapper.writeValueAsBytes(largeInput);
+    when(restTemplate.httpEntityCallback(new HttpEntity<>(largeInput, headers), String.class))
+        .thenReturn(request -> request.getBody().write(body));
+    MockClientHttpRequest runtimeRequest = new MockClientHttpRequest();
+    when(restTemplate.execute(
+            eq(PROXY_SHELF_URL + "/" + REMOTE_URL_HASH),
+            eq(HttpMethod.POST),
+            any(RequestCallback.class),
+            any(ResponseExtractor.class)))
+        .thenAnswer(invocation -> {
+          invocation.<RequestCallback>getArgument(2).doWithRequest(runtimeRequest);
+          return runtimeResponds(RUNTIME_EXECUTE_RESPONSE).answer(invocation);
+        });
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    assertEquals(RUNTIME_EXECUTE_RESPONSE, executor.execute(largeInput, TYPE_JSON));
+    assertEquals("gzip", runtimeRequest.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+    assertTrue(runtimeRequest.getBodyAsBytes().length < body.length);
+    assertEquals(runtimeRequest.getBodyAsBytes().length, runtimeRequest.getHeaders().getContentLength());
+    assertArrayEquals(body, new GZIPInputStream(
+        new ByteArrayInputStream(runtimeRequest.getBodyAsBytes())).readAllBytes());
+  }
+
+  @Test
+  @DisplayName("JSON is exchanged in CBOR with runtimes that list it in their formats")
+  public void testExecuteNegotiatesBinaryFormat() throws IOException {
+    when(restTemplate.getForEntity(REMOTE_RUNTIME_URL + "/info", JsonNode.class))
+        .thenReturn(new ResponseEntity<>(((ObjectNode) infoResponseBody.deepCopy())
+            .<JsonNode>set("formats", mapper.createArrayNode().add("cbor")), HttpStatus.OK));
+    HttpHeaders cborHeaders = new HttpHeaders();
+    cborHeaders.set(HttpHeaders.ACCEPT, WireFormat.CBOR.getAccept());
+    cborHeaders.setContentType(WireFormat.CBOR.getMediaType());
+    when(restTemplate.httpEntityCallback(
+            new HttpEntity<>(WireFormat.CBOR.write(input), cborHeaders), String.class))
+        .thenReturn(executionCallback);
+    byte[] result = WireFormat.CBOR.write(mapper.createObjectNode().put("result", "Welcome, test"));
+    when(restTemplate.execute(
+            eq(PROXY_SHELF_URL + "/" + REMOTE_URL_HASH),
+            eq(HttpMethod.POST),
+            any(RequestCallback.class),
+            any(ResponseExtractor.class)))
+        .thenAnswer(invocation -> {
+          MockClientHttpResponse response = new MockClientHttpResponse(result, HttpStatus.OK);
+          response.getHeaders().setContentType(WireFormat.CBOR.getMediaType());
+          return invocation.<ResponseExtractor<?>>getArgument(3).extractData(response);
+        });
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    assertEquals("Welcome, test", ((JsonNode) executor.execute(input, TYPE_JSON)).asText());
+  }
+
+  @Test
+  @DisplayName("Activations and executions are timed and tagged by engine, runtime, endpoint and outcome")
+  public void testActivationAndExecutionAreMeasured() {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    state().metrics = new ProxyMetrics(registry);
+    whenRuntimeExecutes()
+        .thenAnswer(runtimeResponds(RUNTIME_EXECUTE_RESPONSE))
+        .thenThrow(new HttpClientErrorException(HttpStatus.BAD_REQUEST, ERROR_MESSAGE));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    executor.execute(input, TYPE_JSON);
+    assertThrows(AdapterClientErrorException.class, () -> executor.execute(input, TYPE_JSON));
+
+    assertEquals(1, registry.get(ProxyMetrics.ACTIVATION)
+        .tags("engine", NODE_ENGINE, "runtime", REMOTE_RUNTIME_URL, "endpoint", ENDPOINT_URI.toString())
+        .tag("outcome", "success")
+        .timer().count());
+    assertEquals(1, registry.get(ProxyMetrics.EXECUTION).tag("outcome", "success").timer().count());
+    assertEquals(1, registry.get(ProxyMetrics.EXECUTION)
+        .tags("outcome", "client_error", "exception", "AdapterClientErrorException")
+        .timer().count());
+    assertEquals(RUNTIME_EXECUTE_RESPONSE.length(), (long) registry.get(ProxyMetrics.RESPONSE_SIZE)
+        .tag("endpoint", ENDPOINT_URI.toString())
+        .summary().totalAmount());
+    assertEquals(0, registry.get(ProxyMetrics.IN_FLIGHT).tag("runtime", REMOTE_RUNTIME_URL).gauge().value());
+  }
+
   @Test
   @DisplayName("Execute remote object handles server error")
   public void testExecuteRemoteObject_ThrowsAdapterServerErrorException() {
-    when(restTemplate.postForObject(
-            PROXY_SHELF_URL + "/" + REMOTE_URL_HASH,
-            new HttpEntity<>(input, headers),
-            String.class))
-        .thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, ERROR_MESSAGE));
+    whenRuntimeExecutes().thenThrow(new HttpServerErrorException(HttpStatus.INTERNAL_SERVER_ERROR, ERROR_MESSAGE));
     Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
 
     AdapterServerErrorException exception =
@@ -244,11 +415,7 @@ public class ProxyAdapterTest {
   @Test
   @DisplayName("Execute remote object handles other errors")
   public void testExecuteRemoteObject_ThrowsAdapterExceptionForNonClientOrServerExceptions() {
-    when(restTemplate.postForObject(
-            PROXY_SHELF_URL + "/" + REMOTE_URL_HASH,
-            new HttpEntity<>(input, headers),
-            String.class))
-        .thenThrow(new RuntimeException(ERROR_MESSAGE));
+    whenRuntimeExecutes().thenThrow(new RuntimeException(ERROR_MESSAGE));
     Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
 
     AdapterException exception =
@@ -260,6 +427,102 @@ public class ProxyAdapterTest {
     assertEquals(ERROR_MESSAGE, exception.getMessage());
   }
 
+  @Test
+  @DisplayName("Execute async uses web client and gets result json")
+  public void testExecuteAsync_whenJsonIsReturned_WithResult() {
+    ReflectionTestUtils.setField(proxyAdapter, "webClient", stubWebClient(HttpStatus.OK,
+        "{\"result\":\"" + RUNTIME_EXECUTE_RESPONSE + "\"}"));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    ExecutorResponse response =
+        executor.executeAsync(clientRequest()).toCompletableFuture().join();
+    assertEquals(RUNTIME_EXECUTE_RESPONSE, ((JsonNode) response.getBody()).asText());
+  }
+
+  @Test
+  @DisplayName("Execute async handles client error")
+  public void testExecuteAsync_CompletesWithAdapterClientErrorException() {
+    ReflectionTestUtils.setField(proxyAdapter, "webClient",
+        stubWebClient(HttpStatus.BAD_REQUEST, ERROR_MESSAGE));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    CompletionException exception = assertThrows(CompletionException.class,
+        () -> executor.executeAsync(clientRequest()).toCompletableFuture().join());
+    assertEquals(AdapterClientErrorException.class, exception.getCause().getClass());
+  }
+
+  @Test
+  @DisplayName("Execute async handles server error")
+  public void testExecuteAsync_CompletesWithAdapterServerErrorException() {
+    ReflectionTestUtils.setField(proxyAdapter, "webClient",
+        stubWebClient(HttpStatus.INTERNAL_SERVER_ERROR, ERROR_MESSAGE));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    CompletionException exception = assertThrows(CompletionException.class,
+        () -> executor.executeAsync(clientRequest()).toCompletableFuture().join());
+    assertEquals(AdapterServerErrorException.class, exception.getCause().getClass());
+  }
+
+  @Test
+  @DisplayName("Execute async completes exceptionally instead of throwing once the circuit opens")
+  public void testExecuteAsync_CompletesExceptionally_WhenCircuitOpens() {
+    state().circuitBreakerConfig =
+        new CircuitBreaker.Config(50, 100, Duration.ofSeconds(10), 2, 2, Duration.ofMinutes(1), 1);
+    ReflectionTestUtils.setField(proxyAdapter, "webClient",
+        stubWebClient(HttpStatus.INTERNAL_SERVER_ERROR, ERROR_MESSAGE));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    for (int i = 0; i < 2; i++) {
+      assertThrows(CompletionException.class,
+          () -> executor.executeAsync(clientRequest()).toCompletableFuture().join());
+    }
+
+    CompletionStage<ExecutorResponse> refused = executor.executeAsync(clientRequest());
+    CompletionException exception =
+        assertThrows(CompletionException.class, () -> refused.toCompletableFuture().join());
+    assertTrue(exception.getCause().getMessage().contains("circuit breaker is open"));
+  }
+
+  @Test
+  @DisplayName("Execute batch sends one request to runtimes that support batches")
+  public void testExecuteBatch_whenRuntimeSupportsBatch() {
+    when(restTemplate.getForEntity(REMOTE_RUNTIME_URL + "/info", JsonNode.class))
+        .thenReturn(
+            new ResponseEntity<>(
+                ((ObjectNode) infoResponseBody.deepCopy()).put("batch", true), HttpStatus.OK));
+    JsonNode secondInput = mapper.createObjectNode().put("name", "second");
+    when(restTemplate.httpEntityCallback(
+            new HttpEntity<>(List.of(input, secondInput), headers), String.class))
+        .thenReturn(executionCallback);
+    when(restTemplate.execute(
+            eq(PROXY_SHELF_URL + "/" + REMOTE_URL_HASH + "/batch"),
+            eq(HttpMethod.POST),
+            any(RequestCallback.class),
+            any(ResponseExtractor.class)))
+        .thenAnswer(runtimeResponds("[{\"result\":\"first\"},{\"result\":\"second\"}]"));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    List<ExecutorResponse> responses =
+        executor.executeBatch(List.of(clientRequest(), clientRequest(secondInput)));
+
+    assertEquals("first", ((JsonNode) responses.get(0).getBody()).asText());
+    assertEquals("second", ((JsonNode) responses.get(1).getBody()).asText());
+    assertEquals(secondInput, responses.get(1).getClientRequest().getBody());
+  }
+
+  @Test
+  @DisplayName("Execute batch falls back to single requests for other runtimes")
+  public void testExecuteBatch_whenRuntimeDoesNotSupportBatch() {
+    whenRuntimeExecutes().thenAnswer(runtimeResponds("{\"result\":\"single\"}"));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    List<ExecutorResponse> responses = executor.executeBatch(List.of(clientRequest(), clientRequest()));
+
+    assertEquals(2, responses.size());
+    assertEquals("single", ((JsonNode) responses.get(1).getBody()).asText());
+    Mockito.verify(restTemplate, Mockito.never())
+        .execute(contains("/batch"), any(), any(), any(ResponseExtractor.class));
+  }
+
   @Test
   @DisplayName("Execute remote object handles remote runtime down")
   public void testActivateThrowsAdapterServerError_IfRemoteIsDown() {
@@ -277,6 +540,239 @@ public class ProxyAdapterTest {
         exception.getMessage());
   }
 
+  @Test
+  @DisplayName("Activation uses cached runtime health")
+  public void testActivateChecksRuntimeHealthOnce() {
+    proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    Mockito.verify(restTemplate, Mockito.times(1))
+        .getForEntity(REMOTE_RUNTIME_URL + "/info", JsonNode.class);
+  }
+
+  @Test
+  @DisplayName("Bulk activation checks each runtime once and bounds concurrent activations")
+  public void testActivateAllChecksEachRuntimeOnce() {
+    state().activationParallelism = 2;
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+    when(restTemplate.postForObject(
+            eq(REMOTE_RUNTIME_URL + "/endpoints"), any(HttpEntity.class), eq(JsonNode.class)))
+        .thenAnswer(
+            invocation -> {
+              maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+              Thread.sleep(20);
+              active.decrementAndGet();
+              return activationResponseBody;
+            });
+    List<ActivationRequest> requests = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      requests.add(new ActivationRequest(
+          objectLocation, URI.create(ENDPOINT_URI + "-" + i), deploymentDesc.deepCopy()));
+    }
+    requests.add(new ActivationRequest(
+        objectLocation, ENDPOINT_URI, deploymentDesc.deepCopy().put("engine", "python")));
+
+    List<ActivationResult> results = proxyAdapter.activateAll(requests);
+
+    assertEquals(7, results.size());
+    for (int i = 0; i < 6; i++) {
+      assertTrue(results.get(i).isActivated());
+      assertNotNull(results.get(i).getExecutor());
+      assertEquals(URI.create(ENDPOINT_URI + "-" + i), results.get(i).getRequest().getEndpointURI());
+    }
+    assertFalse(results.get(6).isActivated());
+    assertTrue(results.get(6).getError() instanceof AdapterServerErrorException);
+    assertTrue(maxActive.get() <= 2);
+    Mockito.verify(restTemplate, Mockito.times(1))
+        .getForEntity(REMOTE_RUNTIME_URL + "/info", JsonNode.class);
+  }
+
+  @Test
+  @DisplayName("Concurrent bulk activations share each runtime's limit")
+  public void testConcurrentActivateAllShareRuntimeLimit() throws Exception {
+    state().activationParallelism = 2;
+    AtomicInteger active = new AtomicInteger();
+    AtomicInteger maxActive = new AtomicInteger();
+    when(restTemplate.postForObject(
+            eq(REMOTE_RUNTIME_URL + "/endpoints"), any(HttpEntity.class), eq(JsonNode.class)))
+        .thenAnswer(
+            invocation -> {
+              maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+              Thread.sleep(20);
+              active.decrementAndGet();
+              return activationResponseBody;
+            });
+    List<CompletableFuture<List<ActivationResult>>> calls = new ArrayList<>();
+    for (int call = 0; call < 3; call++) {
+      List<ActivationRequest> requests = new ArrayList<>();
+      for (int i = 0; i < 4; i++) {
+        requests.add(new ActivationRequest(
+            objectLocation, URI.create(ENDPOINT_URI + "-" + call + "-" + i), deploymentDesc.deepCopy()));
+      }
+      calls.add(CompletableFuture.supplyAsync(() -> proxyAdapter.activateAll(requests)));
+    }
+
+    for (CompletableFuture<List<ActivationResult>> call : calls) {
+      call.get(5, TimeUnit.SECONDS).forEach(result -> assertTrue(result.isActivated()));
+    }
+    assertTrue(maxActive.get() <= 2, "at most 2 at once, was " + maxActive.get());
+  }
+
+  @Test
+  @DisplayName("Endpoints with a cache in their deployment spec memoize results until reactivated")
+  public void testActivateWithCacheMemoizesResults() {
+    deploymentDesc.putObject("cache").put("ttl", 60000).put("maxEntries", 10);
+    activationRequestBody.set("cache", deploymentDesc.get("cache"));
+    whenRuntimeExecutes().thenAnswer(runtimeResponds("{\"result\":\"" + RUNTIME_EXECUTE_RESPONSE + "\"}"));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    executor.execute(input, TYPE_JSON);
+    JsonNode cached = (JsonNode) executor.execute(input, TYPE_JSON);
+
+    assertEquals(RUNTIME_EXECUTE_RESPONSE, cached.asText());
+    Mockito.verify(restTemplate, Mockito.times(1))
+        .execute(anyString(), any(), any(), any(ResponseExtractor.class));
+    assertEquals(
+        1L,
+        ((Map<?, ?>) proxyAdapter.getResultCacheStats().get(ENDPOINT_URI.toString())).get("hits"));
+
+    proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    executor.execute(input, TYPE_JSON);
+    Mockito.verify(restTemplate, Mockito.times(2))
+        .execute(anyString(), any(), any(), any(ResponseExtractor.class));
+  }
+
+  @Test
+  @DisplayName("An unchanged endpoint keeps its cached results until its runtime restarts")
+  public void testUnchangedEndpointKeepsCachedResults() {
+    ((ObjectNode) infoResponseBody).put("instanceId", "first-start");
+    deploymentDesc.putObject("cache").put("ttl", 60000).put("maxEntries", 10);
+    activationRequestBody.set("cache", deploymentDesc.get("cache"));
+    whenRuntimeExecutes().thenAnswer(runtimeResponds("{\"result\":\"" + RUNTIME_EXECUTE_RESPONSE + "\"}"));
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    executor.execute(input, TYPE_JSON);
+
+    assertSame(executor, proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc));
+    executor.execute(input, TYPE_JSON);
+    Mockito.verify(restTemplate, Mockito.times(1))
+        .execute(anyString(), any(), any(), any(ResponseExtractor.class));
+
+    ((ObjectNode) infoResponseBody).put("instanceId", "restarted");
+    Executor reactivated = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    assertNotSame(executor, reactivated);
+    reactivated.execute(input, TYPE_JSON);
+    Mockito.verify(restTemplate, Mockito.times(2))
+        .execute(anyString(), any(), any(), any(ResponseExtractor.class));
+  }
+
+  @Test
+  @DisplayName("Endpoints are activated on every runtime for the engine and requests are spread across them")
+  public void testActivateFansOutToEveryRuntime() {
+    registerSecondRuntime("up");
+    Executor executor = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    when(restTemplate.httpEntityCallback(any(), eq(String.class))).thenReturn(executionCallback);
+    when(restTemplate.execute(anyString(), eq(HttpMethod.POST), any(RequestCallback.class), any(ResponseExtractor.class)))
+        .thenReturn(RUNTIME_EXECUTE_RESPONSE);
+
+    executor.execute(input, TYPE_JSON);
+    executor.execute(input, TYPE_JSON);
+
+    Mockito.verify(restTemplate)
+        .execute(eq(PROXY_SHELF_URL + "/" + REMOTE_URL_HASH), any(), any(), any(ResponseExtractor.class));
+    Mockito.verify(restTemplate)
+        .execute(eq(SECOND_RUNTIME_URL + "/" + REMOTE_URL_HASH), any(), any(), any(ResponseExtractor.class));
+  }
+
+  @Test
+  @DisplayName("An endpoint is activated on all of its runtimes at once")
+  public void testActivatesOnRuntimesInParallel() {
+    CountDownLatch bothStarted = new CountDownLatch(2);
+    AtomicInteger overlapped = new AtomicInteger();
+    when(restTemplate.postForObject(anyString(), any(HttpEntity.class), eq(JsonNode.class)))
+        .thenAnswer(
+            invocation -> {
+              bothStarted.countDown();
+              if (bothStarted.await(5, TimeUnit.SECONDS)) {
+                overlapped.incrementAndGet();
+              }
+              return mapper.createObjectNode().put("uri", REMOTE_URL_HASH);
+            });
+    when(restTemplate.getForEntity(SECOND_RUNTIME_URL + "/info", JsonNode.class))
+        .thenReturn(new ResponseEntity<>(
+            mapper.createObjectNode().put("status", "up").put("url", SECOND_RUNTIME_URL), HttpStatus.OK));
+    // Registered once stubbed, as registering checks the runtime on another thread
+    proxyAdapter.registerRemoteRuntime(
+        mapper.createObjectNode().put("engine", NODE_ENGINE).put("url", SECOND_RUNTIME_URL),
+        mockHttpServletRequest);
+
+    proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    assertEquals(2, overlapped.get());
+  }
+
+  @Test
+  @DisplayName("Runtimes that are down are left out of activation")
+  public void testActivateSkipsRuntimesThatAreDown() {
+    registerSecondRuntime("down");
+
+    proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    Mockito.verify(restTemplate, Mockito.never())
+        .postForObject(eq(SECOND_RUNTIME_URL + "/endpoints"), any(), eq(JsonNode.class));
+  }
+
+  @Test
+  @DisplayName("Heartbeats name their runtime when several serve the engine")
+  public void testHeartbeatNeedsUrlWithSeveralRuntimes() {
+    registerSecondRuntime("down");
+
+    assertEquals(HttpStatus.BAD_REQUEST, proxyAdapter.heartbeat(NODE_ENGINE, null).getStatusCode());
+    ResponseEntity<JsonNode> response =
+        proxyAdapter.heartbeat(NODE_ENGINE, mapper.createObjectNode().put("url", SECOND_RUNTIME_URL));
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals(SECOND_RUNTIME_URL, response.getBody().get("url").asText());
+    assertEquals("up", response.getBody().get("status").asText());
+  }
+
+  @Test
+  @DisplayName("A runtime can be removed, naming it by url when several serve the engine")
+  public void testDeregisterRemovesRuntime() {
+    registerSecondRuntime("up");
+
+    assertEquals(
+        HttpStatus.BAD_REQUEST, proxyAdapter.deregisterRemoteRuntime(NODE_ENGINE, null).getStatusCode());
+    ResponseEntity<JsonNode> response = proxyAdapter.deregisterRemoteRuntime(NODE_ENGINE, SECOND_RUNTIME_URL);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("removed", response.getBody().get("status").asText());
+    assertEquals(1, proxyAdapter.getRuntimeDetails().size());
+    assertEquals(
+        HttpStatus.NOT_FOUND,
+        proxyAdapter.deregisterRemoteRuntime(NODE_ENGINE, SECOND_RUNTIME_URL).getStatusCode());
+  }
+
+  @Test
+  @DisplayName("Heartbeat marks runtime up without probing it")
+  public void testHeartbeatMarksRuntimeUp() {
+    ResponseEntity<JsonNode> response =
+        proxyAdapter.heartbeat(NODE_ENGINE, mapper.createObjectNode().put("version", "2.0"));
+    proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertEquals("up", response.getBody().get("status").asText());
+    assertEquals("2.0", response.getBody().get("version").asText());
+    Mockito.verify(restTemplate, Mockito.never())
+        .getForEntity(REMOTE_RUNTIME_URL + "/info", JsonNode.class);
+  }
+
+  @Test
+  @DisplayName("Heartbeat for unknown engine is not found")
+  public void testHeartbeatForUnknownEngine() {
+    assertEquals(
+        HttpStatus.NOT_FOUND, proxyAdapter.heartbeat("cobol", null).getStatusCode());
+  }
+
   @Test
   @DisplayName("Activation handles remote client error")
   public void testActivateThrowsAdapterClientError_WhenClientErrorDuringActivation() {
@@ -335,8 +831,11 @@ public class ProxyAdapterTest {
   public void returnsEnvironmentList() {
     ArrayNode environments = new ObjectMapper().createArrayNode();
     ObjectNode envDetails = new ObjectMapper().createObjectNode();
-    envDetails.put("status", "up");
+    envDetails.put("engine", NODE_ENGINE);
+    envDetails.put("version", NODE_VERSION);
+    envDetails.put("forceUpdate", "false");
     envDetails.put("url", "http://remote-runtime.com");
+    envDetails.put("status", "up");
     environments.add(envDetails);
     assertEquals(environments, proxyAdapter.getRuntimeDetails());
   }
@@ -352,9 +851,75 @@ public class ProxyAdapterTest {
   public void returnsCodeArtifact() throws IOException {
     MockHttpServletRequest request = new MockHttpServletRequest();
     request.setRequestURI("http://activator.com/proxy/artifacts/naan/name/version/artifact.js");
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    proxyAdapter.getCodeArtifact(request, response);
     assertArrayEquals(
-        helloWorldCode.getInputStream().readAllBytes(),
-        proxyAdapter.getCodeArtifact(request).getInputStream().readAllBytes());
+        helloWorldCode.getInputStream().readAllBytes(), response.getContentAsByteArray());
+  }
+
+  @Test
+  @DisplayName("Binary files are read from the shelf again after the object is activated")
+  public void codeArtifactCacheIsInvalidatedOnActivation() throws IOException {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    request.setRequestURI("http://activator.com/proxy/artifacts/" + objectLocation + "/src/welcome.js");
+    proxyAdapter.getCodeArtifact(request, new MockHttpServletResponse());
+    proxyAdapter.getCodeArtifact(request, new MockHttpServletResponse());
+    assertEquals(1, binaryReads.get());
+
+    proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    proxyAdapter.getCodeArtifact(request, new MockHttpServletResponse());
+
+    assertEquals(2, binaryReads.get());
+  }
+
+  @Test
+  @DisplayName("Activating an unchanged endpoint again keeps its executor until the runtime restarts")
+  public void unchangedEndpointIsNotActivatedAgain() {
+    ((ObjectNode) infoResponseBody).put("instanceId", "first-start");
+    Executor first = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+    Executor second = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    assertSame(first, second);
+    Mockito.verify(restTemplate, Mockito.times(1))
+        .postForObject(eq(REMOTE_RUNTIME_URL + "/endpoints"), any(), eq(JsonNode.class));
+
+    // The runtime restarted, but no health check has seen it yet
+    ((ObjectNode) infoResponseBody).put("instanceId", "restarted");
+    Executor third = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    assertNotSame(first, third);
+    Mockito.verify(restTemplate, Mockito.times(2))
+        .postForObject(eq(REMOTE_RUNTIME_URL + "/endpoints"), any(), eq(JsonNode.class));
+
+    ((ObjectNode) infoResponseBody).remove("instanceId");
+    Executor fourth = proxyAdapter.activate(objectLocation, ENDPOINT_URI, deploymentDesc);
+
+    assertNotSame(third, fourth);
+    Mockito.verify(restTemplate, Mockito.times(3))
+        .postForObject(eq(REMOTE_RUNTIME_URL + "/endpoints"), any(), eq(JsonNode.class));
+  }
+
+  @Test
+  @DisplayName("Shutting down the state stops the adapter's pools")
+  public void shutdownStopsPools() {
+    state().shutdown();
+
+    assertTrue(state().activationExecutor.isShutdown());
+    assertTrue(state().attemptPool.isShutdown());
+  }
+
+  @Test
+  @DisplayName("Shutting down the state writes registrations not yet in the snapshot")
+  public void shutdownWritesPendingSnapshot(@TempDir Path dir) throws IOException {
+    Path file = dir.resolve("runtimes.json");
+    env.setProperty("kgrid.adapter.proxy.registry.file", file.toString());
+    env.setProperty("kgrid.adapter.proxy.registry.write-delay", "60000");
+    proxyAdapter.initialize(state().activationContext);
+    registerSecondRuntime("up");
+
+    state().shutdown();
+
+    assertTrue(Files.readString(file).contains(SECOND_RUNTIME_URL));
   }
 
   @Test
@@ -366,6 +931,66 @@ public class ProxyAdapterTest {
     assertEquals("down", proxyAdapter1.status());
   }
 
+  private ProxyState state() {
+    return (ProxyState) ReflectionTestUtils.getField(proxyAdapter, "state");
+  }
+
+  private void registerSecondRuntime(String status) {
+    Mockito.lenient()
+        .when(restTemplate.getForEntity(SECOND_RUNTIME_URL + "/info", JsonNode.class))
+        .thenReturn(new ResponseEntity<>(
+            mapper.createObjectNode().put("status", status).put("url", SECOND_RUNTIME_URL), HttpStatus.OK));
+    Mockito.lenient()
+        .when(restTemplate.postForObject(eq(SECOND_RUNTIME_URL + "/endpoints"), any(), eq(JsonNode.class)))
+        .thenReturn(mapper.createObjectNode().put("baseUrl", SECOND_RUNTIME_URL).put("uri", REMOTE_URL_HASH));
+    proxyAdapter.registerRemoteRuntime(
+        mapper.createObjectNode().put("engine", NODE_ENGINE).put("url", SECOND_RUNTIME_URL),
+        mockHttpServletRequest);
+  }
+
+  private OngoingStubbing<Object> whenRuntimeExecutes() {
+    when(restTemplate.httpEntityCallback(new HttpEntity<>(input, headers), String.class))
+        .thenReturn(executionCallback);
+    return when(
+        restTemplate.execute(
+            eq(PROXY_SHELF_URL + "/" + REMOTE_URL_HASH),
+            eq(HttpMethod.POST),
+            any(RequestCallback.class),
+            any(ResponseExtractor.class)));
+  }
+
+  private Answer<Object> runtimeResponds(String body) {
+    return invocation ->
+        invocation
+            .<ResponseExtractor<?>>getArgument(3)
+            .extractData(new MockClientHttpResponse(body.getBytes(), HttpStatus.OK));
+  }
+
+  private ClientRequest clientRequest() {
+    return clientRequest(input);
+  }
+
+  private ClientRequest clientRequest(JsonNode input) {
+    return new ClientRequest.Builder()
+        .body(input)
+        .url(ENDPOINT_URI)
+        .headers(Map.of("content-type", List.of(TYPE_JSON)))
+        .httpMethod("POST")
+        .build();
+  }
+
+  private WebClient stubWebClient(HttpStatus status, String body) {
+    return WebClient.builder()
+        .exchangeFunction(
+            request ->
+                Mono.just(
+                    ClientResponse.create(status)
+                        .header(HttpHeaders.CONTENT_TYPE, TYPE_JSON)
+                        .body(body)
+                        .build()))
+        .build();
+  }
+
   private void setUpResponseBodies() {
     infoResponseBody = mapper.createObjectNode().put("status", "up").put("url", REMOTE_RUNTIME_URL);
     deploymentDesc
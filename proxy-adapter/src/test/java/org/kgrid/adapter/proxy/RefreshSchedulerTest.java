@@ -0,0 +1,115 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Refresh Scheduler Tests")
+public class RefreshSchedulerTest {
+
+  private final List<String> refreshed = new CopyOnWriteArrayList<>();
+  private final List<String> refreshThreads = new CopyOnWriteArrayList<>();
+  private RefreshScheduler scheduler;
+
+  @AfterEach
+  public void tearDown() {
+    scheduler.shutdown();
+  }
+
+  @Test
+  @DisplayName("Requests within the debounce window share one refresh on another thread")
+  public void coalescesBurst() throws InterruptedException {
+    scheduler = new RefreshScheduler(this::refresh, Duration.ofMillis(100));
+
+    assertEquals(RefreshScheduler.State.PENDING, scheduler.request("node"));
+    assertEquals(RefreshScheduler.State.PENDING, scheduler.request("node"));
+    assertEquals(RefreshScheduler.State.PENDING, scheduler.request("python"));
+    assertEquals(RefreshScheduler.State.PENDING, scheduler.request("node"));
+    awaitIdle("node");
+    awaitIdle("python");
+
+    assertEquals(1, refreshed.stream().filter("node"::equals).count());
+    assertEquals(1, refreshed.stream().filter("python"::equals).count());
+    refreshThreads.forEach(thread -> assertNotEquals(Thread.currentThread().getName(), thread));
+    @SuppressWarnings("unchecked")
+    Map<String, Object> node = (Map<String, Object>) scheduler.getStats().get("node");
+    assertEquals("idle", node.get("state"));
+    assertEquals(3L, node.get("requests"));
+    assertEquals(1L, node.get("refreshes"));
+  }
+
+  @Test
+  @DisplayName("A request made while the engine refreshes is served by another refresh")
+  public void refreshesAgainAfterRequestWhileRunning() throws InterruptedException {
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    scheduler = new RefreshScheduler(
+        engine -> {
+          refresh(engine);
+          started.countDown();
+          try {
+            release.await(5, TimeUnit.SECONDS);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        },
+        Duration.ofMillis(10));
+
+    scheduler.request("node");
+    assertTrue(started.await(5, TimeUnit.SECONDS));
+    assertEquals(RefreshScheduler.State.RUNNING, scheduler.request("node"));
+    assertEquals(RefreshScheduler.State.RUNNING, scheduler.request("node"));
+    release.countDown();
+    for (int i = 0; i < 500 && refreshed.size() < 2; i++) {
+      Thread.sleep(10);
+    }
+    awaitIdle("node");
+
+    assertEquals(List.of("node", "node"), refreshed);
+  }
+
+  @Test
+  @DisplayName("A failed refresh is reported and doesn't stop later refreshes")
+  public void reportsFailures() throws InterruptedException {
+    scheduler = new RefreshScheduler(
+        engine -> {
+          refresh(engine);
+          if (refreshed.size() == 1) {
+            throw new IllegalStateException("Kaboom");
+          }
+        },
+        Duration.ZERO);
+
+    scheduler.request("node");
+    awaitIdle("node");
+    @SuppressWarnings("unchecked")
+    Map<String, Object> failed = (Map<String, Object>) scheduler.getStats().get("node");
+    assertEquals("Kaboom", failed.get("lastError"));
+
+    scheduler.request("node");
+    awaitIdle("node");
+    assertEquals(2, refreshed.size());
+  }
+
+  private void refresh(String engine) {
+    refreshed.add(engine);
+    refreshThreads.add(Thread.currentThread().getName());
+  }
+
+  private void awaitIdle(String engine) throws InterruptedException {
+    for (int i = 0; i < 500 && scheduler.getState(engine) != RefreshScheduler.State.IDLE; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(RefreshScheduler.State.IDLE, scheduler.getState(engine));
+  }
+}
@@ -0,0 +1,113 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+@DisplayName("Registry Snapshot Tests")
+public class RegistrySnapshotTest {
+
+  private static final String ENGINE = "node";
+  private static final String RUNTIME_URL = "http://remote-runtime.com";
+  private static final String SECOND_RUNTIME_URL = "http://second-runtime.com";
+  private static final String ARTIFACTS_URL = "http://activator.com";
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final RuntimeRegistry registry = new RuntimeRegistry();
+
+  @TempDir
+  Path dir;
+
+  @Test
+  @DisplayName("Restoring a snapshot registers its runtimes as they were")
+  public void restoresRuntimes() throws IOException {
+    Path file = dir.resolve("runtimes.json");
+    registry.register(descriptor(RUNTIME_URL).withDetails(details().put("batch", true)));
+    RegistrySnapshot snapshot = new RegistrySnapshot(file, registry, Duration.ofSeconds(1));
+    snapshot.setArtifactsBaseUrl(ARTIFACTS_URL);
+    snapshot.write();
+    snapshot.shutdown();
+
+    RuntimeRegistry restarted = new RuntimeRegistry();
+    RegistrySnapshot restored = new RegistrySnapshot(file, restarted, Duration.ofSeconds(1));
+
+    assertEquals(List.of(RuntimeDescriptor.id(ENGINE, RUNTIME_URL)), restored.restore());
+    assertEquals(ARTIFACTS_URL, restored.getArtifactsBaseUrl());
+    RuntimeDescriptor runtime = restarted.get(ENGINE);
+    assertEquals(RUNTIME_URL, runtime.getUrl());
+    assertTrue(runtime.supportsBatch());
+    assertEquals(
+        registry.get(ENGINE).getRegisteredAt().toEpochMilli(), runtime.getRegisteredAt().toEpochMilli());
+  }
+
+  @Test
+  @DisplayName("Restoring a snapshot keeps runtimes that have already registered")
+  public void keepsCurrentRegistrations() throws IOException {
+    Path file = dir.resolve("runtimes.json");
+    registry.register(descriptor(RUNTIME_URL));
+    registry.register(descriptor(SECOND_RUNTIME_URL));
+    new RegistrySnapshot(file, registry, Duration.ofSeconds(1)).write();
+
+    RuntimeRegistry restarted = new RuntimeRegistry();
+    RuntimeDescriptor current = descriptor(RUNTIME_URL).withStatus("up");
+    restarted.register(current);
+
+    List<String> restored = new RegistrySnapshot(file, restarted, Duration.ofSeconds(1)).restore();
+
+    assertEquals(List.of(RuntimeDescriptor.id(ENGINE, SECOND_RUNTIME_URL)), restored);
+    assertEquals("up", restarted.getInstance(current.getId()).getStatus());
+    assertEquals(2, restarted.getAll().size());
+  }
+
+  @Test
+  @DisplayName("A missing or unreadable snapshot restores nothing")
+  public void ignoresMissingAndCorruptSnapshots() throws IOException {
+    Path missing = dir.resolve("missing.json");
+    Path corrupt = Files.writeString(dir.resolve("corrupt.json"), "{\"runtimes\": [");
+
+    assertTrue(new RegistrySnapshot(missing, registry, Duration.ofSeconds(1)).restore().isEmpty());
+    assertTrue(new RegistrySnapshot(corrupt, registry, Duration.ofSeconds(1)).restore().isEmpty());
+    assertTrue(registry.getAll().isEmpty());
+  }
+
+  @Test
+  @DisplayName("Registry changes are written in the background once the delay passes")
+  public void writesChangesInBackground() throws Exception {
+    Path file = dir.resolve("snapshot").resolve("runtimes.json");
+    RegistrySnapshot snapshot = new RegistrySnapshot(file, registry, Duration.ofMillis(10));
+    registry.addListener(snapshot);
+
+    registry.register(descriptor(RUNTIME_URL));
+    registry.register(descriptor(SECOND_RUNTIME_URL));
+    for (int i = 0; i < 200 && !Files.exists(file); i++) {
+      Thread.sleep(10);
+    }
+    registry.remove(RuntimeDescriptor.id(ENGINE, RUNTIME_URL));
+    snapshot.shutdown();
+
+    RuntimeRegistry restarted = new RuntimeRegistry();
+    new RegistrySnapshot(file, restarted, Duration.ofSeconds(1)).restore();
+    assertEquals(1, restarted.getAll().size());
+    assertEquals(SECOND_RUNTIME_URL, restarted.get(ENGINE).getUrl());
+    assertNull(restarted.getInstance(RuntimeDescriptor.id(ENGINE, RUNTIME_URL)));
+  }
+
+  private ObjectNode details() {
+    return mapper.createObjectNode().put("engine", ENGINE).put("status", "new");
+  }
+
+  private RuntimeDescriptor descriptor(String url) {
+    return new RuntimeDescriptor(ENGINE, url, details().put("url", url));
+  }
+}
@@ -0,0 +1,209 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.kgrid.adapter.api.AdapterClientErrorException;
+import org.kgrid.adapter.api.AdapterException;
+import org.kgrid.adapter.api.AdapterServerErrorException;
+import org.kgrid.adapter.api.AdapterUnavailableException;
+
+@DisplayName("Request Policy Tests")
+public class RequestPolicyTest {
+
+  private final AtomicInteger attempts = new AtomicInteger();
+  private final LatencyTracker latencies = new LatencyTracker();
+  private final ThreadPoolExecutor pool = RequestPolicy.attemptPool(4, 4);
+
+  @AfterEach
+  public void tearDown() {
+    pool.shutdownNow();
+  }
+
+  @Test
+  @DisplayName("Policies are read from the deployment spec")
+  public void readsSpec() throws Exception {
+    ObjectMapper mapper = new ObjectMapper();
+
+    assertNull(RequestPolicy.fromSpec(mapper.readTree("{\"engine\":\"node\"}"), pool));
+    assertEquals(
+        RequestPolicy.class,
+        RequestPolicy.fromSpec(mapper.readTree("{\"hedge\":{\"percentile\":99}}"), pool).getClass());
+  }
+
+  @Test
+  @DisplayName("Server and connection errors are retried up to the most attempts")
+  public void retriesServerErrors() {
+    RequestPolicy policy = new RequestPolicy(3, Duration.ZERO, 0, Duration.ZERO, null, pool);
+
+    String result = policy.callBlocking(
+        () -> {
+          int attempt = attempts.incrementAndGet();
+          if (attempt == 1) {
+            throw new AdapterServerErrorException("500 Runtime failed");
+          }
+          if (attempt == 2) {
+            throw new AdapterException("I/O error", new IOException("Connection refused"));
+          }
+          return "welcome";
+        },
+        new RetryBudget(0.1, 10),
+        latencies);
+
+    assertEquals("welcome", result);
+    assertEquals(3, attempts.get());
+    assertEquals(1, latencies.getCount());
+  }
+
+  @Test
+  @DisplayName("Client errors are not retried and retries stop when the budget runs out")
+  public void stopsOnClientErrorsAndEmptyBudget() {
+    RequestPolicy policy = new RequestPolicy(3, Duration.ZERO, 0, Duration.ZERO, null, pool);
+
+    assertThrows(AdapterClientErrorException.class, () -> policy.callBlocking(
+        () -> {
+          attempts.incrementAndGet();
+          throw new AdapterClientErrorException("400 Bad input");
+        },
+        new RetryBudget(0.1, 10),
+        latencies));
+    assertEquals(1, attempts.get());
+
+    RetryBudget budget = new RetryBudget(0, 1);
+    assertThrows(AdapterServerErrorException.class, () -> policy.callBlocking(
+        () -> {
+          attempts.incrementAndGet();
+          throw new AdapterServerErrorException("500 Runtime failed");
+        },
+        budget,
+        latencies));
+    assertEquals(3, attempts.get());
+    assertEquals(1L, budget.getStats().get("refused"));
+  }
+
+  @Test
+  @DisplayName("Refusals by the runtime's breaker or bulkhead fail at once")
+  public void doesNotRetryRefusals() {
+    RequestPolicy policy = new RequestPolicy(3, Duration.ZERO, 0, Duration.ZERO, null, pool);
+
+    assertThrows(AdapterUnavailableException.class, () -> policy.callBlocking(
+        () -> {
+          attempts.incrementAndGet();
+          throw new AdapterUnavailableException("Remote runtime node is unavailable: its circuit breaker is open");
+        },
+        new RetryBudget(0.1, 10),
+        latencies));
+    assertEquals(1, attempts.get());
+  }
+
+  @Test
+  @DisplayName("Blocking attempts are refused instead of queued once the pool is full")
+  public void refusesAttemptsWhenPoolIsFull() throws Exception {
+    ThreadPoolExecutor full = RequestPolicy.attemptPool(1, 0);
+    CountDownLatch release = new CountDownLatch(1);
+    try {
+      full.execute(() -> {
+        try {
+          release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      });
+      RequestPolicy policy = new RequestPolicy(3, Duration.ZERO, 0, Duration.ZERO, null, full);
+
+      assertThrows(AdapterUnavailableException.class, () -> policy.callBlocking(
+          () -> {
+            attempts.incrementAndGet();
+            return "welcome";
+          },
+          new RetryBudget(0.1, 10),
+          latencies));
+      assertEquals(0, attempts.get());
+    } finally {
+      release.countDown();
+      full.shutdown();
+    }
+  }
+
+  @Test
+  @DisplayName("A blocking attempt that loses to its hedge is interrupted")
+  public void interruptsLosingBlockingAttempt() throws Exception {
+    RequestPolicy policy = new RequestPolicy(2, Duration.ZERO, 95, Duration.ofMillis(20), null, pool);
+    CountDownLatch interrupted = new CountDownLatch(1);
+
+    String result = policy.callBlocking(
+        () -> {
+          if (attempts.incrementAndGet() == 2) {
+            return "hedged";
+          }
+          try {
+            Thread.sleep(5000);
+          } catch (InterruptedException e) {
+            interrupted.countDown();
+          }
+          return "slow";
+        },
+        new RetryBudget(0.1, 10),
+        latencies);
+
+    assertEquals("hedged", result);
+    assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  @DisplayName("A slow request is hedged, the first answer wins and the other attempt is cancelled")
+  public void hedgesSlowRequests() throws Exception {
+    RequestPolicy policy = new RequestPolicy(2, Duration.ZERO, 95, Duration.ofMillis(20), null, pool);
+    List<CompletableFuture<String>> sent = new ArrayList<>();
+
+    CompletableFuture<String> result = policy.call(
+        () -> {
+          CompletableFuture<String> attempt = new CompletableFuture<>();
+          synchronized (sent) {
+            sent.add(attempt);
+            if (sent.size() == 2) {
+              attempt.complete("hedged");
+            }
+          }
+          return attempt;
+        },
+        new RetryBudget(0.1, 10),
+        latencies);
+
+    assertEquals("hedged", result.get(5, TimeUnit.SECONDS));
+    assertEquals(2, sent.size());
+    assertTrue(sent.get(0).isCancelled());
+  }
+
+  @Test
+  @DisplayName("Requests fail at the deadline however many attempts are left")
+  public void failsAtDeadline() {
+    RequestPolicy policy = new RequestPolicy(3, Duration.ZERO, 0, Duration.ZERO, Duration.ofMillis(20), pool);
+    CompletableFuture<String> stalled = new CompletableFuture<>();
+
+    CompletableFuture<String> result = policy.call(() -> stalled, new RetryBudget(0.1, 10), latencies);
+
+    ExecutionException failure =
+        assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+    assertEquals(AdapterServerErrorException.class, failure.getCause().getClass());
+    assertFalse(RequestPolicy.isRetryable(failure.getCause()));
+    assertTrue(stalled.isCancelled());
+  }
+}
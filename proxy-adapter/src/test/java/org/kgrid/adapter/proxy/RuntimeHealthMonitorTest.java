@@ -0,0 +1,162 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestTemplate;
+
+@DisplayName("Runtime Health Monitor Tests")
+public class RuntimeHealthMonitorTest {
+
+  private static final String ENGINE = "node";
+  private static final String RUNTIME_URL = "http://remote-runtime.com";
+  private static final String RUNTIME_ID = RuntimeDescriptor.id(ENGINE, RUNTIME_URL);
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final RestTemplate restTemplate = mock(RestTemplate.class);
+  private final RuntimeRegistry runtimes = new RuntimeRegistry();
+  private RuntimeHealthMonitor monitor;
+
+  @BeforeEach
+  public void setUp() {
+    runtimes.register(
+        new RuntimeDescriptor(
+            ENGINE, RUNTIME_URL, mapper.createObjectNode().put("engine", ENGINE).put("url", RUNTIME_URL)));
+    when(restTemplate.getForEntity(RUNTIME_URL + "/info", JsonNode.class))
+        .thenReturn(
+            new ResponseEntity<>(
+                mapper.createObjectNode().put("status", "up").put("url", RUNTIME_URL),
+                HttpStatus.OK));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    monitor.shutdown();
+  }
+
+  @Test
+  @DisplayName("Watched runtimes are polled in the background")
+  public void pollsWatchedRuntimes() {
+    monitor = monitor(Duration.ofMillis(10), Duration.ZERO);
+    monitor.watch(RUNTIME_ID);
+
+    verify(restTemplate, timeout(1000).atLeast(2)).getForEntity(RUNTIME_URL + "/info", JsonNode.class);
+    assertTrue(monitor.isUp(RUNTIME_ID));
+  }
+
+  @Test
+  @DisplayName("Runtime is re-probed when heartbeats stop arriving")
+  public void reprobesWhenHeartbeatIsStale() throws InterruptedException {
+    monitor = monitor(Duration.ZERO, Duration.ofMillis(20));
+    monitor.heartbeat(RUNTIME_ID, null);
+    assertTrue(monitor.isUp(RUNTIME_ID));
+
+    when(restTemplate.getForEntity(RUNTIME_URL + "/info", JsonNode.class))
+        .thenThrow(new RuntimeException("down"));
+    Thread.sleep(50);
+
+    assertFalse(monitor.isUp(RUNTIME_ID));
+    assertEquals(RuntimeHealthMonitor.NOT_CONNECTED, monitor.getHealth(RUNTIME_ID).getStatus());
+  }
+
+  @Test
+  @DisplayName("Refresh reports last known status for runtimes that miss the deadline")
+  public void refreshStopsWaitingAtDeadline() {
+    monitor = monitor(Duration.ZERO, Duration.ZERO);
+    when(restTemplate.getForEntity(RUNTIME_URL + "/info", JsonNode.class))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(1000);
+              return new ResponseEntity<>(mapper.createObjectNode().put("status", "up"), HttpStatus.OK);
+            });
+
+    long start = System.nanoTime();
+    monitor.refresh(Duration.ZERO, Duration.ofMillis(50));
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertTrue(elapsedMillis < 500, "refresh took " + elapsedMillis + "ms");
+    assertEquals("", runtimes.get(ENGINE).getStatus());
+  }
+
+  @Test
+  @DisplayName("Concurrent status checks of one runtime share a probe")
+  public void concurrentChecksShareProbe() {
+    monitor = monitor(Duration.ZERO, Duration.ZERO);
+    when(restTemplate.getForEntity(RUNTIME_URL + "/info", JsonNode.class))
+        .thenAnswer(
+            invocation -> {
+              Thread.sleep(100);
+              return new ResponseEntity<>(mapper.createObjectNode().put("status", "up"), HttpStatus.OK);
+            });
+
+    CompletableFuture<RuntimeHealth> first = monitor.checkAsync(RUNTIME_ID);
+    CompletableFuture<RuntimeHealth> second = monitor.checkAsync(RUNTIME_ID);
+
+    assertSame(first, second);
+    assertTrue(first.join().isUp());
+    verify(restTemplate, times(1)).getForEntity(RUNTIME_URL + "/info", JsonNode.class);
+  }
+
+  @Test
+  @DisplayName("A probe keeps the capabilities the runtime registered with")
+  public void probeKeepsRegisteredCapabilities() {
+    monitor = monitor(Duration.ZERO, Duration.ZERO);
+    runtimes.register(
+        new RuntimeDescriptor(
+            ENGINE,
+            RUNTIME_URL,
+            mapper.createObjectNode().put("engine", ENGINE).put("url", RUNTIME_URL).put("http2", true)));
+
+    assertTrue(monitor.check(RUNTIME_ID).isUp());
+
+    RuntimeDescriptor probed = runtimes.getInstance(RUNTIME_ID);
+    assertTrue(probed.isUp());
+    assertTrue(probed.supportsHttp2());
+  }
+
+  @Test
+  @DisplayName("An engine that re-registers from a new url replaces the instance that stays down")
+  public void evictsInstanceThatStaysDown() throws InterruptedException {
+    String newUrl = "http://restarted-runtime.com";
+    when(restTemplate.getForEntity(RUNTIME_URL + "/info", JsonNode.class))
+        .thenThrow(new RuntimeException("down"));
+    when(restTemplate.getForEntity(newUrl + "/info", JsonNode.class))
+        .thenReturn(new ResponseEntity<>(mapper.createObjectNode().put("status", "up"), HttpStatus.OK));
+    monitor = new RuntimeHealthMonitor(
+        restTemplate, runtimes, Duration.ofMillis(10), Duration.ofMillis(10), 0, Duration.ZERO, Duration.ofMillis(50));
+    runtimes.addListener(monitor);
+    monitor.watch(RUNTIME_ID);
+
+    runtimes.register(
+        new RuntimeDescriptor(ENGINE, newUrl, mapper.createObjectNode().put("engine", ENGINE).put("url", newUrl)));
+    for (int i = 0; i < 200 && runtimes.containsInstance(RUNTIME_ID); i++) {
+      Thread.sleep(10);
+    }
+
+    assertFalse(runtimes.containsInstance(RUNTIME_ID));
+    assertEquals(newUrl, runtimes.get(ENGINE).getUrl());
+    assertEquals(1, runtimes.getInstances(ENGINE).size());
+  }
+
+  private RuntimeHealthMonitor monitor(Duration interval, Duration heartbeatTimeout) {
+    return new RuntimeHealthMonitor(
+        restTemplate, runtimes, interval, Duration.ofMinutes(5), 0.2, heartbeatTimeout);
+  }
+}
@@ -0,0 +1,132 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+@DisplayName("Runtime Registry Tests")
+public class RuntimeRegistryTest {
+
+  private static final String ENGINE = "node";
+  private static final String RUNTIME_URL = "http://remote-runtime.com";
+  private static final String RUNTIME_ID = RuntimeDescriptor.id(ENGINE, RUNTIME_URL);
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final RuntimeRegistry registry = new RuntimeRegistry();
+
+  @Test
+  @DisplayName("Descriptors are not changed by changes to the registration json")
+  public void descriptorsAreImmutable() {
+    ObjectNode details = mapper.createObjectNode().put("engine", ENGINE).put("status", "new");
+    registry.register(new RuntimeDescriptor(ENGINE, RUNTIME_URL, details));
+
+    details.put("status", "changed");
+    registry.get(ENGINE).toJson().put("status", "changed again");
+
+    assertEquals("new", registry.get(ENGINE).getStatus());
+    assertEquals("new", registry.get(ENGINE).toJson().get("status").asText());
+  }
+
+  @Test
+  @DisplayName("Compare and set only replaces the expected descriptor")
+  public void compareAndSetReplacesExpectedDescriptor() {
+    RuntimeDescriptor first = descriptor("new");
+    registry.register(first);
+    RuntimeDescriptor up = first.withStatus("up");
+
+    assertTrue(registry.compareAndSet(first, up));
+    assertFalse(registry.compareAndSet(first, first.withStatus("down")));
+    assertSame(up, registry.get(ENGINE));
+  }
+
+  @Test
+  @DisplayName("Register returns the registration it replaced")
+  public void registerReturnsPrevious() {
+    RuntimeDescriptor first = descriptor("new");
+
+    assertNull(registry.register(first));
+    assertSame(first, registry.register(descriptor("existing runtime")));
+  }
+
+  @Test
+  @DisplayName("Listeners hear about registrations and updates")
+  public void notifiesListeners() {
+    List<String> events = new ArrayList<>();
+    registry.addListener(
+        new RuntimeRegistryListener() {
+          @Override
+          public void runtimeRegistered(RuntimeDescriptor previous, RuntimeDescriptor current) {
+            events.add("registered " + current.getStatus());
+          }
+
+          @Override
+          public void runtimeUpdated(RuntimeDescriptor previous, RuntimeDescriptor current) {
+            events.add("updated " + current.getStatus());
+          }
+        });
+
+    registry.register(descriptor("new"));
+    registry.update(RUNTIME_ID, runtime -> runtime.withStatus("up"));
+
+    assertEquals(List.of("registered new", "updated up"), events);
+  }
+
+  @Test
+  @DisplayName("Concurrent updates are not lost")
+  public void concurrentUpdatesAreNotLost() throws InterruptedException {
+    registry.register(new RuntimeDescriptor(ENGINE, RUNTIME_URL, mapper.createObjectNode().put("count", 0)));
+    ExecutorService pool = Executors.newFixedThreadPool(8);
+    AtomicInteger submitted = new AtomicInteger();
+    for (int i = 0; i < 1000; i++) {
+      pool.execute(
+          () -> {
+            submitted.incrementAndGet();
+            registry.update(
+                RUNTIME_ID,
+                runtime -> {
+                  ObjectNode details = runtime.toJson();
+                  details.put("count", details.get("count").asInt() + 1);
+                  return runtime.withDetails(details);
+                });
+          });
+    }
+    pool.shutdown();
+    assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+
+    assertEquals(submitted.get(), registry.get(ENGINE).getDetail("count").asInt());
+  }
+
+  @Test
+  @DisplayName("Runtimes at different urls for the same engine are kept as separate instances")
+  public void keepsInstancesPerEngine() throws InterruptedException {
+    RuntimeDescriptor first = descriptor("up");
+    Thread.sleep(2);
+    RuntimeDescriptor second = new RuntimeDescriptor(ENGINE, "http://other-runtime.com", mapper.createObjectNode());
+    registry.register(first);
+    assertNull(registry.register(second));
+
+    assertEquals(List.of(first, second), registry.getInstances(ENGINE));
+    assertSame(first, registry.get(ENGINE));
+    assertSame(second, registry.getInstance(RuntimeDescriptor.id(ENGINE, "http://other-runtime.com")));
+    assertEquals(List.of(ENGINE), registry.getEngines());
+    assertEquals(2, registry.getAll().size());
+  }
+
+  private RuntimeDescriptor descriptor(String status) {
+    return new RuntimeDescriptor(
+        ENGINE, RUNTIME_URL, mapper.createObjectNode().put("engine", ENGINE).put("status", status));
+  }
+}
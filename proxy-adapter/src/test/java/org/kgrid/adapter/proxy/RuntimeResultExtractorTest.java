@@ -0,0 +1,155 @@
+package org.kgrid.adapter.proxy;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.kgrid.adapter.api.AdapterServerErrorException;
+
+@DisplayName("Runtime Result Extractor Tests")
+public class RuntimeResultExtractorTest {
+
+  private final RuntimeResultExtractor extractor = new RuntimeResultExtractor();
+
+  @Test
+  @DisplayName("Returns the result field of a json object")
+  public void returnsResultField() throws IOException {
+    JsonNode result =
+        (JsonNode) extract(" {\"request_id\":\"1\",\"result\":{\"score\":3},\"trace\":[1,2,3]}");
+    assertEquals("{\"score\":3}", result.toString());
+  }
+
+  @Test
+  @DisplayName("Returns the whole json object when there is no result field")
+  public void returnsWholeObjectWithoutResult() throws IOException {
+    String body = "{\"greeting\":\"hi\",\"nested\":{\"a\":[1,null]}}";
+    assertEquals(body, extract(body).toString());
+  }
+
+  @Test
+  @DisplayName("Returns null results as json null")
+  public void returnsNullResult() throws IOException {
+    assertTrue(((JsonNode) extract("{\"result\":null}")).isNull());
+  }
+
+  @Test
+  @DisplayName("Returns other json values whole")
+  public void returnsOtherJsonValues() throws IOException {
+    assertEquals("[{\"result\":1}]", extract("[{\"result\":1}]").toString());
+    assertEquals(42, ((JsonNode) extract("42")).asInt());
+  }
+
+  @Test
+  @DisplayName("Returns raw text when the body isn't json")
+  public void returnsRawText() throws IOException {
+    assertEquals("Welcome to Knowledge Grid, Tom", extract("Welcome to Knowledge Grid, Tom"));
+  }
+
+  @Test
+  @DisplayName("Extracts the result of each element of a batch")
+  public void extractsBatchResults() throws IOException {
+    List<Object> results =
+        extractor.extractBatch(
+            new ByteArrayInputStream(
+                "[{\"result\":1},{\"other\":2},\"three\"]".getBytes(StandardCharsets.UTF_8)));
+    assertEquals("[1, {\"other\":2}, \"three\"]", results.toString());
+  }
+
+  @Test
+  @DisplayName("Returns raw text when the body only starts like a json object")
+  public void malformedObjectIsRawText() throws IOException {
+    assertEquals("{\"result\": 1, \"oops\"}", extract("{\"result\": 1, \"oops\"}"));
+    assertEquals("{placeholder} filled in", extract("{placeholder} filled in"));
+  }
+
+  @Test
+  @DisplayName("A malformed body that starts like a json object and is too long to keep fails as a server error")
+  public void longMalformedObjectFails() {
+    String body = "{\"result\": \"" + "x".repeat(RuntimeResultExtractor.RAW_TEXT_LIMIT) + "\", \"oops\"}";
+    assertThrows(AdapterServerErrorException.class, () -> extract(body));
+  }
+
+  @Test
+  @DisplayName("Streaming extraction allocates less than buffering the body and parsing the tree")
+  public void streamingAllocatesLessThanBuffering() throws IOException {
+    com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+    byte[] body = largeResponse();
+    long threadId = Thread.currentThread().getId();
+
+    // warm up both paths so class loading and JIT don't count against either
+    for (int i = 0; i < 3; i++) {
+      bufferedExtract(body);
+      extractor.extract(new ByteArrayInputStream(body), StandardCharsets.UTF_8);
+    }
+
+    long before = threads.getThreadAllocatedBytes(threadId);
+    Object buffered = bufferedExtract(body);
+    long bufferedBytes = threads.getThreadAllocatedBytes(threadId) - before;
+
+    before = threads.getThreadAllocatedBytes(threadId);
+    Object streamed = extractor.extract(new ByteArrayInputStream(body), StandardCharsets.UTF_8);
+    long streamedBytes = threads.getThreadAllocatedBytes(threadId) - before;
+
+    assertEquals(buffered, streamed);
+    assertTrue(
+        streamedBytes < body.length,
+        "streamed " + streamedBytes + " bytes for a body of " + body.length + " bytes");
+    assertTrue(
+        streamedBytes * 4 < bufferedBytes,
+        "streamed " + streamedBytes + " bytes, buffered " + bufferedBytes + " bytes");
+  }
+
+  @Test
+  @DisplayName("Reads binary formats into the same results as json")
+  public void readsBinaryFormats() throws IOException {
+    JsonNode body = new ObjectMapper().readTree(
+        "{\"request_id\":\"1\",\"result\":{\"score\":3,\"tags\":[\"a\"]},\"trace\":[1,2,3]}");
+    for (WireFormat format : WireFormat.values()) {
+      Object result = extractor.extract(
+          new ByteArrayInputStream(format.write(body)), format.getMediaType());
+      assertEquals(body.get("result"), result, format.getName());
+
+      List<Object> batch = extractor.extractBatch(
+          new ByteArrayInputStream(format.write(List.of(body, 42))), format.getMediaType());
+      assertEquals(List.of(body.get("result"), new ObjectMapper().readTree("42")), batch, format.getName());
+    }
+  }
+
+  /** What the proxy executor used to do: read the body to a String and parse it with a new mapper. */
+  private Object bufferedExtract(byte[] body) throws IOException {
+    String runtimeResult = new String(body, StandardCharsets.UTF_8);
+    JsonNode resultJson = new ObjectMapper().readTree(runtimeResult);
+    if (resultJson.has("result")) {
+      return resultJson.get("result");
+    }
+    return resultJson;
+  }
+
+  private byte[] largeResponse() {
+    StringBuilder body = new StringBuilder("{\"result\":{\"score\":0.42},\"trace\":[");
+    for (int i = 0; i < 50_000; i++) {
+      if (i > 0) {
+        body.append(',');
+      }
+      body.append("{\"step\":").append(i).append(",\"message\":\"evaluated rule ").append(i).append("\"}");
+    }
+    return body.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+  }
+
+  private Object extract(String body) throws IOException {
+    return extractor.extract(
+        new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+  }
+}